@@ -0,0 +1,89 @@
+/**
+ * Keeps the first few of a stream of items in some order, without holding on to (or even boxing) the rest: a max-heap
+ * of at most capacity ints, with the worst one kept at the root so it's the one pushed out when a better one comes.
+ * Picking the first k of n items this way takes O(n log k) time and O(k) space.
+ */
+public class BoundedHeap {
+    /*------------------FIELDS------*/
+    private final int[] heap;
+    private final Order order;
+    private int size = 0;
+
+    /**
+     * The order items are kept in
+     */
+    public interface Order {
+        /**
+         * @param a An item : int
+         * @param b Another item : int
+         * @return negative if a comes first, positive if b does, 0 if either can : int
+         */
+        int compare(int a, int b);
+    }
+
+    /**
+     * Constructor for BoundedHeap
+     * @param capacity The most items to keep : int
+     * @param order The order to keep them in : Order
+     */
+    public BoundedHeap(int capacity, Order order) {
+        this.heap = new int[capacity];
+        this.order = order;
+    }
+
+    /**
+     * Keeps an item if there's room for it, or if it comes before the last of the items being kept
+     * @param item The item : int
+     */
+    public void offer(int item) {
+        if (size < heap.length) {
+            int child = size++;
+            while (child > 0) { // sift up
+                int parent = (child - 1) >>> 1;
+                if (order.compare(heap[parent], item) >= 0) break;
+                heap[child] = heap[parent];
+                child = parent;
+            }
+            heap[child] = item;
+        } else if (size > 0 && order.compare(item, heap[0]) < 0) {
+            siftDown(item, size);
+        }
+    }
+
+    /**
+     * Puts an item at the root and moves it down to its place in the first n slots
+     */
+    private void siftDown(int item, int n) {
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= n) break;
+            if (child + 1 < n && order.compare(heap[child + 1], heap[child]) > 0) child++;
+            if (order.compare(item, heap[child]) >= 0) break;
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = item;
+    }
+
+    /**
+     * @return The number of items being kept : int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the heap, handing back what it kept
+     * @return The items kept, first first : int[]
+     */
+    public int[] drainSorted() {
+        int[] sorted = new int[size];
+        for (int last = size - 1; last >= 0; last--) { // the root is always the last of those left
+            sorted[last] = heap[0];
+            siftDown(heap[last], last);
+        }
+        size = 0;
+        return sorted;
+    }
+}
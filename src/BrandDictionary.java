@@ -0,0 +1,60 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BrandDictionary {
+    /*------------------FIELDS------*/
+    // every brand name ever seen, interned to a small int id so garments and searches can compare brands as ints
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16]; // names[id] is the brand with that id
+    private static int count = 0; // only changed while holding the class lock
+
+    private BrandDictionary() {
+        // static methods only
+    }
+
+    /**
+     * Gets the id of a brand, giving it a new one if it has never been seen before
+     * @param brand The brand's name : String
+     * @return The brand's id : int
+     */
+    public static int intern(String brand) {
+        Integer id = ids.get(brand);
+        if (id != null) return id;
+        synchronized (BrandDictionary.class) {
+            id = ids.get(brand);
+            if (id != null) return id; // someone else got there first
+            String[] current = names;
+            if (count == current.length) current = Arrays.copyOf(current, count * 2);
+            current[count] = brand;
+            names = current; // publish the name before the id can be handed out
+            ids.put(brand, count);
+            return count++;
+        }
+    }
+
+    /**
+     * Looks up the id of a brand without adding it to the dictionary
+     * @param brand The brand's name : String
+     * @return The brand's id, or GarmentColumns.ABSENT if it has never been seen
+     */
+    public static int lookup(String brand) {
+        Integer id = ids.get(brand);
+        return id == null ? GarmentColumns.ABSENT : id;
+    }
+
+    /**
+     * @return The number of brands that have been given ids, which only ever goes up : int
+     */
+    public static int size() {
+        return ids.size();
+    }
+
+    /**
+     * @param id A brand id handed out by intern : int
+     * @return The name of the brand with that id : String
+     */
+    public static String nameOf(int id) {
+        return names[id];
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.*;
+
+public class CatalogAggregates {
+    /*------------------FIELDS------*/
+    private static final GarmentType[] GARMENT_TYPES = GarmentType.values();
+    private final Map<String, Integer> brandCounts; // garments per brand, only brands with some
+    private final Set<String> allBrands; // live read-only view
+    private final PriceBounds priceBounds; // over the whole inventory
+    private final Map<GarmentType, PriceBounds> typePriceBounds = new EnumMap<>(GarmentType.class);
+
+    /**
+     * Constructor for CatalogAggregates, with no garments counted
+     */
+    public CatalogAggregates() {
+        brandCounts = new HashMap<>();
+        allBrands = Collections.unmodifiableSet(brandCounts.keySet());
+        priceBounds = new PriceBounds();
+    }
+
+    /**
+     * Constructor for a copy of another CatalogAggregates, see freeze()
+     * @param source The aggregates to copy : CatalogAggregates
+     */
+    private CatalogAggregates(CatalogAggregates source) {
+        brandCounts = new HashMap<>(source.brandCounts);
+        allBrands = Collections.unmodifiableSet(brandCounts.keySet());
+        priceBounds = source.priceBounds.freeze();
+        source.typePriceBounds.forEach((type, bounds) -> typePriceBounds.put(type, bounds.freeze()));
+    }
+
+    /**
+     * @return A copy of the aggregates as they are now, for another thread to read. Nothing must be added to or
+     * removed from the copy : CatalogAggregates
+     */
+    public CatalogAggregates freeze() {
+        return new CatalogAggregates(this);
+    }
+
+    /**
+     * Updates the aggregates for a garment that was just added to the columns
+     * @param columns The columns the garment is in : GarmentColumns
+     * @param ordinal The garment's ordinal : int
+     */
+    public void add(GarmentColumns columns, int ordinal) {
+        double price = columns.getPrice(ordinal);
+        priceBounds.add(price);
+        GarmentType type = garmentType(columns, ordinal);
+        if (type != null) typePriceBounds.computeIfAbsent(type, t -> new PriceBounds()).add(price);
+        int brandId = columns.getValueId(Filter.BRAND, ordinal);
+        if (brandId != GarmentColumns.ABSENT) brandCounts.merge(BrandDictionary.nameOf(brandId), 1, Integer::sum);
+    }
+
+    /**
+     * Updates the aggregates for a garment that is being removed. Brands left with no garments are dropped.
+     * @param columns The columns the garment is in : GarmentColumns
+     * @param ordinal The garment's ordinal : int
+     */
+    public void remove(GarmentColumns columns, int ordinal) {
+        double price = columns.getPrice(ordinal);
+        priceBounds.remove(price);
+        GarmentType type = garmentType(columns, ordinal);
+        if (type != null) typePriceBounds.get(type).remove(price);
+        int brandId = columns.getValueId(Filter.BRAND, ordinal);
+        if (brandId != GarmentColumns.ABSENT) {
+            brandCounts.computeIfPresent(BrandDictionary.nameOf(brandId), (brand, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    /**
+     * @param columns The columns the garment is in : GarmentColumns
+     * @param ordinal The garment's ordinal : int
+     * @return The garment's type, or null if it doesn't have one : GarmentType
+     */
+    private static GarmentType garmentType(GarmentColumns columns, int ordinal) {
+        int typeOrdinal = columns.getValueId(Filter.GARMENT_TYPE, ordinal);
+        return typeOrdinal == GarmentColumns.ABSENT ? null : GARMENT_TYPES[typeOrdinal];
+    }
+
+    /**
+     * @return read-only view of every brand that has at least one garment : Set
+     */
+    public Set<String> getAllBrands() {
+        return allBrands;
+    }
+
+    /**
+     * @param brand The brand's name : String
+     * @return The number of garments of that brand : int
+     */
+    public int getBrandCount(String brand) {
+        return brandCounts.getOrDefault(brand, 0);
+    }
+
+    /**
+     * @return The lowest price of any garment, or 0 if there are none : double
+     */
+    public double getMinPrice() {
+        return priceBounds.getMinPrice();
+    }
+
+    /**
+     * @return The highest price of any garment, or 0 if there are none : double
+     */
+    public double getMaxPrice() {
+        return priceBounds.getMaxPrice();
+    }
+
+    /**
+     * @param type A type of garment : GarmentType
+     * @return The lowest price of a garment of that type, or 0 if there are none : double
+     */
+    public double getMinPrice(GarmentType type) {
+        PriceBounds bounds = typePriceBounds.get(type);
+        return bounds == null ? 0 : bounds.getMinPrice();
+    }
+
+    /**
+     * @param type A type of garment : GarmentType
+     * @return The highest price of a garment of that type, or 0 if there are none : double
+     */
+    public double getMaxPrice(GarmentType type) {
+        PriceBounds bounds = typePriceBounds.get(type);
+        return bounds == null ? 0 : bounds.getMaxPrice();
+    }
+}
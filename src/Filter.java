@@ -1,6 +1,6 @@
 public enum Filter {
-    // enum for categorising our search filters, gets placed in HashMaps.
-    GARMENT_TYPE,BRAND,SIZE,MATERIAL,NECKLINE,SLEEVE_TYPE,HOODIE_STYLE,POCKET_TYPE;
+    // enum for categorising our search filters, gets placed in HashMaps. Declared in the order garments are described in
+    GARMENT_TYPE,BRAND,MATERIAL,SIZE,NECKLINE,SLEEVE_TYPE,HOODIE_STYLE,POCKET_TYPE;
 
     /**
      * Prints out each Enum value as a string in a prettier format
@@ -1,5 +1,3 @@
-import java.text.DecimalFormat;
-
 public class Garment {
     /*----------------FIELDS------------*/
     private final String name;
@@ -66,13 +64,31 @@ public class Garment {
     }
 
     /**
-     * Method used to return a string description in the requested format, describing the Garment.
+     * Checks that a size can be ordered: one the garment comes in, or none if it doesn't come in sizes
+     * @param size The size ordered, or null : Size
+     * @throws IllegalArgumentException if the garment comes in sizes and none or another was given, or it doesn't
+     * and one was
+     */
+    public void checkOrderSize(Size size){
+        if(!garmentSpecs.hasFilter(Filter.SIZE)){
+            if(size != null) throw new IllegalArgumentException("Garment " + productCode + " doesn't come in sizes");
+            return;
+        }
+        if(size == null) throw new IllegalArgumentException("size must be given, as garment " + productCode
+                + " comes in " + garmentSpecs.getFilter(Filter.SIZE));
+        if((garmentSpecs.getValueMask(Filter.SIZE) & (1L << size.ordinal())) == 0){
+            throw new IllegalArgumentException("There is no garment " + productCode + " in size " + size.name());
+        }
+    }
+
+    /**
+     * Method used to return a string description in the requested format, describing the Garment. This formats it
+     * every time; GarmentDescriptions.describe remembers it.
      * @return Description of Garment : String
      */
     public String getGarmentInformation(){
-        DecimalFormat df = new DecimalFormat("0.00"); // enforces the two decimal places in the price
-        return "\nItem name: "+this.getName()+"\nCaption: "+this.getDescription() +"\nProduct code: "
-                +this.getProductCode()+this.getGarmentSpecs().getGarmentSpecInfo()+"\nPrice: $"
-                +df.format(this.getPrice())+"\n";
+        return new StringBuilder(256).append("\nItem name: ").append(name).append("\nCaption: ").append(description)
+                .append("\nProduct code: ").append(productCode).append(garmentSpecs.getGarmentSpecInfo())
+                .append("\nPrice: $").append(GarmentDescriptions.formatPrice(price)).append("\n").toString();
     }
 }
@@ -0,0 +1,82 @@
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The searches the app runs against a collection of garments, whether it's held on the heap (Inventory) or read
+ * straight out of a memory-mapped snapshot (MappedInventory)
+ */
+public interface GarmentCatalog {
+
+    /**
+     * @return A read-only Set containing the Strings of all the available brands
+     */
+    Set<String> getAllBrands();
+
+    /**
+     * @param brand The brand's name : String
+     * @return The number of garments of that brand : int
+     */
+    int getBrandCount(String brand);
+
+    /**
+     * @return double : maximum price of a garment, or 0 if there are none
+     */
+    double findMaxPrice();
+
+    /**
+     * @return double : minimum price of a garment, or 0 if there are none
+     */
+    double findMinPrice();
+
+    /**
+     * @param type The type of garment : GarmentType
+     * @return double : maximum price of a garment of that type, or 0 if there are none
+     */
+    double findMaxPrice(GarmentType type);
+
+    /**
+     * @param type The type of garment : GarmentType
+     * @return double : minimum price of a garment of that type, or 0 if there are none
+     */
+    double findMinPrice(GarmentType type);
+
+    /**
+     * @param productCode A garment's product code : long
+     * @return The garment with that product code, or null if there isn't one : Garment
+     */
+    Garment findGarment(long productCode);
+
+    /**
+     * Finds the garments matching the user's search criteria, with the semantics of GarmentSpecs.matches
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return matchingGarments : The matching Garment objects, tagged with the catalog version : SearchResults
+     */
+    SearchResults findMatch(GarmentSpecs dreamGarment);
+
+    /**
+     * Finds one page of the garments matching the user's search criteria, sorted, without building the rest
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @param sortKey The order to put the results in : SortKey
+     * @param limit The most garments to put on the page : int
+     * @param cursor Where the last page ended, or null for the first page : PageCursor
+     * @return The page of garments, tagged with the catalog version : SearchPage
+     */
+    SearchPage findPage(GarmentSpecs dreamGarment, SortKey sortKey, int limit, PageCursor cursor);
+
+    /**
+     * Finds the garments matching the user's search criteria lazily: each Garment is only built when the stream
+     * gets to it, so a stream that stops early (anyMatch, findFirst, limit) builds only what it uses
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return The matching garments, in the same order findMatch gives them : Stream
+     */
+    Stream<Garment> search(GarmentSpecs dreamGarment);
+
+    /**
+     * Counts the garments matching the user's search criteria, building as few of them as the catalog can
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return How many garments findMatch would find : long
+     */
+    default long count(GarmentSpecs dreamGarment) {
+        return search(dreamGarment).count(); // free for a SIZED stream, which is counted without being read
+    }
+}
@@ -0,0 +1,196 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Paints one row of the results list: a garment's description, as it used to be shown in a text area of its own.
+ * A single text area is reused as a rubber stamp for every row, so the number of components stays the same however
+ * many garments were found, and only the rows on screen are ever painted.
+ * <p>
+ * Every row is the same height, so the list never measures the rows it isn't painting. To make sure every description
+ * fits, each line of it is given one line of the row, and the caption CAPTION_LINES; a line too long for them is cut
+ * short with an ellipsis. The whole description is still shown when the garment is ordered.
+ * <p>
+ * A row starts with the garment's picture, if it has one. Painting never waits for it: a picture that isn't in memory
+ * yet is asked for, and the list is repainted once the ImageService has loaded it.
+ */
+public class GarmentCellRenderer extends JTextArea implements ListCellRenderer<Garment> {
+    /*------------------FIELDS------*/
+    private static final long serialVersionUID = 1L;
+    public static final int PICTURE_SIZE = 64; // pictures are scaled down to fit a square this big, left of the text
+    private static final int PICTURE_GAP = 6; // between the picture and the text
+    // each row is this wide, so the list never measures every row to find out
+    public static final int CELL_WIDTH = 420 + PICTURE_SIZE + PICTURE_GAP;
+    private static final int CAPTION_LINES = 2; // captions are the only part of a description that runs long
+    private static final String CAPTION = "Caption: "; // how the caption's line starts, see Garment.getGarmentInformation
+    private static final String ELLIPSIS = "\u2026";
+    // name, caption, product code, a line for every Filter a garment could have, and price
+    private static final int ROW_LINES = 1 + CAPTION_LINES + 1 + Filter.values().length + 1;
+    private static final int FITTED = 1024; // fitted descriptions kept, a few screens' worth
+    private final transient ImageService images; // where the pictures come from
+    private transient BufferedImage picture; // the picture of the garment being painted, or null
+    // description -> as it fits in a row, in the current font, least recently used first
+    private final Map<String, String> fitted = new LinkedHashMap<>(FITTED, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > FITTED;
+        }
+    };
+
+    /**
+     * Constructor for GarmentCellRenderer
+     * @param images Where the garments' pictures are loaded from : ImageService
+     */
+    public GarmentCellRenderer(ImageService images) {
+        this.images = images;
+        // the rows are broken into lines as they're fitted, so the text area never wraps them itself
+        setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createMatteBorder(0, 0, 1, 0, Color.LIGHT_GRAY), // a line between garments
+                BorderFactory.createEmptyBorder(4, 2 + PICTURE_SIZE + PICTURE_GAP, 4, 2))); // the picture goes left
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends Garment> list, Garment garment, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        useFont(list.getFont());
+        String description = GarmentDescriptions.describe(garment);
+        String text = fitted.get(description);
+        if (text == null) {
+            text = fit(description);
+            fitted.put(description, text);
+        }
+        setText(text);
+        picture = picture(list, garment.getProductCode());
+        setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+        setForeground(isSelected ? list.getSelectionForeground() : list.getForeground());
+        return this;
+    }
+
+    /**
+     * Works out how tall every row should be: tall enough for the longest description a garment can have, once it's
+     * fitted, so no row is ever cut off however long its garment's caption is
+     * @param list The list the rows are painted in : JList
+     * @return The row height, in pixels : int
+     */
+    public int rowHeight(JList<? extends Garment> list) {
+        useFont(list.getFont());
+        setText("X" + "\nX".repeat(ROW_LINES - 1));
+        Insets insets = getInsets();
+        return Math.max(getPreferredSize().height, insets.top + PICTURE_SIZE + insets.bottom);
+    }
+
+    /**
+     * Gets a garment's picture if it's in memory, and otherwise asks for it to be loaded, repainting the list once it
+     * has been if there is one
+     * @param list The list being painted : JList
+     * @param productCode The garment's product code : long
+     * @return The picture, or null if it isn't in memory yet or the garment hasn't got one : BufferedImage
+     */
+    private BufferedImage picture(JList<? extends Garment> list, long productCode) {
+        BufferedImage cached = images.cachedProductThumbnail(productCode, PICTURE_SIZE, PICTURE_SIZE);
+        if (cached != null) return cached;
+        images.productThumbnail(productCode, PICTURE_SIZE, PICTURE_SIZE).thenAccept(loaded -> {
+            if (loaded != null) SwingUtilities.invokeLater(list::repaint); // only the rows on screen are painted
+        });
+        return null;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (picture == null) return;
+        Insets insets = getInsets();
+        int left = insets.left - PICTURE_GAP - PICTURE_SIZE; // centred in the space left for it
+        g.drawImage(picture, left + (PICTURE_SIZE - picture.getWidth()) / 2,
+                insets.top + (PICTURE_SIZE - picture.getHeight()) / 2, null);
+    }
+
+    private void useFont(Font font) {
+        if (getFont() == font) return;
+        setFont(font);
+        fitted.clear(); // they were fitted to the old one
+    }
+
+    /**
+     * Breaks a description into the lines it's shown in, at word boundaries, so each of its lines takes up one line
+     * of the row and the caption at most CAPTION_LINES
+     * @param description The description : String
+     * @return The description as it fits in a row : String
+     */
+    private String fit(String description) {
+        FontMetrics metrics = getFontMetrics(getFont());
+        Insets insets = getInsets();
+        int width = CELL_WIDTH - insets.left - insets.right;
+        StringBuilder text = new StringBuilder();
+        for (String line : description.strip().split("\n")) { // the blank lines around it are the border's job here
+            if (text.length() > 0) text.append('\n');
+            wrap(text, line, line.startsWith(CAPTION) ? CAPTION_LINES : 1, metrics, width);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Breaks a line into as many lines as it needs, up to a limit, ending the last with an ellipsis if the line
+     * doesn't fit in them
+     * @param text Where to put the lines : StringBuilder
+     * @param line The line : String
+     * @param maxLines The most lines it can take up : int
+     * @param metrics The font's metrics : FontMetrics
+     * @param width How wide a line can be, in pixels : int
+     */
+    private static void wrap(StringBuilder text, String line, int maxLines, FontMetrics metrics, int width) {
+        String[] words = line.split(" ");
+        StringBuilder current = new StringBuilder();
+        int lines = 1;
+        for (int w = 0; w < words.length; w++) {
+            if (current.length() == 0 || metrics.stringWidth(current + " " + words[w]) <= width) {
+                if (current.length() > 0) current.append(' ');
+                current.append(words[w]);
+                continue;
+            }
+            if (lines == maxLines) { // there's more, but no more room for it
+                text.append(ellipsize(current + " " + words[w], metrics, width, true));
+                return;
+            }
+            text.append(ellipsize(current.toString(), metrics, width, false)).append('\n');
+            current.setLength(0);
+            current.append(words[w]);
+            lines++;
+        }
+        text.append(ellipsize(current.toString(), metrics, width, false));
+    }
+
+    /**
+     * @param line A line : String
+     * @param metrics The font's metrics : FontMetrics
+     * @param width How wide it can be, in pixels : int
+     * @param cut true if the line goes on past what's given, so it has to end with an ellipsis : boolean
+     * @return The line, cut short with an ellipsis if it's too wide or cut : String
+     */
+    private static String ellipsize(String line, FontMetrics metrics, int width, boolean cut) {
+        if (!cut && metrics.stringWidth(line) <= width) return line;
+        int end = line.length();
+        while (end > 0 && metrics.stringWidth(line.substring(0, end) + ELLIPSIS) > width) end--;
+        return line.substring(0, end).stripTrailing() + ELLIPSIS;
+    }
+
+    // a renderer is only ever painted, never laid out or listened to, so none of this needs doing (see DefaultListCellRenderer)
+
+    @Override
+    public void invalidate() {
+    }
+
+    @Override
+    public void validate() {
+    }
+
+    @Override
+    public void revalidate() {
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+}
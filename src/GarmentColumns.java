@@ -0,0 +1,276 @@
+import java.util.*;
+
+public class GarmentColumns {
+    /*------------------FIELDS------*/
+    public static final int ABSENT = -1; // stored in a column when a garment doesn't have that filter
+    private static final Size[] SIZES = Size.values();
+    private static final Enum<?>[][] ENUM_CONSTANTS = new Enum<?>[Filter.values().length][]; // values() per Filter
+    private int size = 0; // number of garments stored
+    private long[] productCodes = new long[16];
+    private double[] prices = new double[16];
+    private String[] names = new String[16];
+    private String[] descriptions = new String[16];
+    private int[] brandIds = new int[16]; // BrandDictionary ids
+    private short[] sizeMasks = new short[16]; // bit n set if Size with ordinal n is available
+    private final byte[][] enumOrdinals = new byte[Filter.values().length][]; // one column per enum valued Filter
+
+    static {
+        for(Filter filter : Filter.values()){
+            if(enumType(filter) != null) ENUM_CONSTANTS[filter.ordinal()] = enumType(filter).getEnumConstants();
+        }
+    }
+
+    /**
+     * Constructor for GarmentColumns, creating an empty column for each enum valued Filter
+     */
+    public GarmentColumns(){
+        for(Filter filter : Filter.values()){
+            if(enumType(filter) != null) enumOrdinals[filter.ordinal()] = new byte[16];
+        }
+    }
+
+    /**
+     * Constructor for a frozen view of some columns, see freeze()
+     * @param source The columns to view : GarmentColumns
+     */
+    private GarmentColumns(GarmentColumns source){
+        size = source.size;
+        productCodes = source.productCodes;
+        prices = source.prices;
+        names = source.names;
+        descriptions = source.descriptions;
+        brandIds = source.brandIds;
+        sizeMasks = source.sizeMasks;
+        for(int i = 0; i < enumOrdinals.length; i++) enumOrdinals[i] = source.enumOrdinals[i];
+    }
+
+    /**
+     * Makes a view of the garments stored so far, for another thread to read. It shares the arrays rather than
+     * copying them, which is safe because garments are only ever appended: later rows are written past the end
+     * the view can see, or into new arrays once these are full. Nothing must be added to the view itself.
+     * @return The view : GarmentColumns
+     */
+    public GarmentColumns freeze(){
+        return new GarmentColumns(this);
+    }
+
+    /**
+     * Gives the enum class that a Filter's values belong to
+     * @param filter The Filter in question : Filter
+     * @return The enum class, or null if the Filter's values aren't a single enum (brands and sizes)
+     */
+    public static Class<? extends Enum<?>> enumType(Filter filter){
+        return switch(filter){
+            case GARMENT_TYPE -> GarmentType.class;
+            case MATERIAL -> Material.class;
+            case NECKLINE -> Neckline.class;
+            case SLEEVE_TYPE -> SleeveType.class;
+            case HOODIE_STYLE -> HoodieStyle.class;
+            case POCKET_TYPE -> PocketType.class;
+            case BRAND, SIZE -> null;
+        };
+    }
+
+    /**
+     * Splits a Garment up into the columns. The Garment object itself is not kept.
+     * @param garment The garment to store : Garment
+     * @return The ordinal the garment was stored at : int
+     */
+    public int add(Garment garment){
+        if(size == productCodes.length) grow();
+        int ordinal = size;
+        productCodes[ordinal] = garment.getProductCode();
+        prices[ordinal] = garment.getPrice();
+        names[ordinal] = garment.getName();
+        descriptions[ordinal] = garment.getDescription();
+        brandIds[ordinal] = ABSENT;
+        sizeMasks[ordinal] = ABSENT;
+        for(byte[] column : enumOrdinals) if(column != null) column[ordinal] = ABSENT;
+        GarmentSpecs specs = garment.getGarmentSpecs();
+        for(Filter filter : Filter.values()){
+            if(!specs.hasFilter(filter)) continue;
+            if(filter == Filter.BRAND){
+                Object brand = specs.getFilter(filter);
+                if(brand instanceof Collection<?> brands && brands.size() == 1) brand = brands.iterator().next();
+                if(!(brand instanceof String name)) throw new IllegalArgumentException("A garment must have exactly one brand, not " + specs.getFilter(filter));
+                brandIds[ordinal] = BrandDictionary.intern(name); // the brand is known from now on, and can be searched for
+            } else if(filter == Filter.SIZE){
+                sizeMasks[ordinal] = (short) specs.getValueMask(filter);
+            } else {
+                long mask = specs.getValueMask(filter);
+                if(Long.bitCount(mask) != 1) throw new IllegalArgumentException(filter + " value " + specs.getFilter(filter) + " cannot be stored in a column");
+                enumOrdinals[filter.ordinal()][ordinal] = (byte) Long.numberOfTrailingZeros(mask);
+            }
+        }
+        size++;
+        return ordinal;
+    }
+
+    /**
+     * Stores a garment whose values are already ids, such as one read back from an InventorySnapshot
+     * @param productCode The garment's product code : long
+     * @param price The garment's price : double
+     * @param name The garment's name : String
+     * @param description The garment's description : String
+     * @param brandId The garment's BrandDictionary id, or ABSENT : int
+     * @param sizeMask bit mask of the garment's available sizes, or ABSENT : short
+     * @param valueOrdinals The garment's value for each enum valued Filter, indexed by Filter ordinal, or ABSENT : byte[]
+     * @return The ordinal the garment was stored at : int
+     */
+    public int add(long productCode, double price, String name, String description, int brandId, short sizeMask,
+                   byte[] valueOrdinals){
+        if(size == productCodes.length) grow();
+        int ordinal = size;
+        productCodes[ordinal] = productCode;
+        prices[ordinal] = price;
+        names[ordinal] = name;
+        descriptions[ordinal] = description;
+        brandIds[ordinal] = brandId;
+        sizeMasks[ordinal] = sizeMask;
+        for(int i = 0; i < enumOrdinals.length; i++){
+            if(enumOrdinals[i] != null) enumOrdinals[i][ordinal] = valueOrdinals[i];
+        }
+        size++;
+        return ordinal;
+    }
+
+    /**
+     * Stores a copy of a garment held in other columns, as it's stored there
+     * @param source The columns the garment is in : GarmentColumns
+     * @param ordinal The garment's ordinal in them : int
+     * @return The ordinal the garment was stored at here : int
+     */
+    public int copy(GarmentColumns source, int ordinal){
+        if(size == productCodes.length) grow();
+        int copy = size;
+        productCodes[copy] = source.productCodes[ordinal];
+        prices[copy] = source.prices[ordinal];
+        names[copy] = source.names[ordinal];
+        descriptions[copy] = source.descriptions[ordinal];
+        brandIds[copy] = source.brandIds[ordinal];
+        sizeMasks[copy] = source.sizeMasks[ordinal];
+        for(int i = 0; i < enumOrdinals.length; i++){
+            if(enumOrdinals[i] != null) enumOrdinals[i][copy] = source.enumOrdinals[i][ordinal];
+        }
+        size++;
+        return copy;
+    }
+
+    /**
+     * Doubles the length of every column
+     */
+    private void grow(){
+        int length = productCodes.length * 2;
+        productCodes = Arrays.copyOf(productCodes, length);
+        prices = Arrays.copyOf(prices, length);
+        names = Arrays.copyOf(names, length);
+        descriptions = Arrays.copyOf(descriptions, length);
+        brandIds = Arrays.copyOf(brandIds, length);
+        sizeMasks = Arrays.copyOf(sizeMasks, length);
+        for(int i = 0; i < enumOrdinals.length; i++){
+            if(enumOrdinals[i] != null) enumOrdinals[i] = Arrays.copyOf(enumOrdinals[i], length);
+        }
+    }
+
+    /**
+     * Gives the id of a garment's single value for a Filter. Not for SIZE, which uses getSizeMask.
+     * @param filter The Filter in question : Filter
+     * @param ordinal The garment's ordinal : int
+     * @return The value's id, or ABSENT if the garment doesn't have the Filter
+     */
+    public int getValueId(Filter filter, int ordinal){
+        if(filter == Filter.BRAND) return brandIds[ordinal];
+        return enumOrdinals[filter.ordinal()][ordinal];
+    }
+
+    /**
+     * @param ordinal The garment's ordinal : int
+     * @return bit mask of the garment's available sizes by Size ordinal, or ABSENT if it has no SIZE filter : short
+     */
+    public short getSizeMask(int ordinal){
+        return sizeMasks[ordinal];
+    }
+
+    /**
+     * @param ordinal The garment's ordinal : int
+     * @return The garment's product code : long
+     */
+    public long getProductCode(int ordinal){
+        return productCodes[ordinal];
+    }
+
+    /**
+     * @param ordinal The garment's ordinal : int
+     * @return The garment's price : double
+     */
+    public double getPrice(int ordinal){
+        return prices[ordinal];
+    }
+
+    /**
+     * @param ordinal The garment's ordinal : int
+     * @return The garment's name : String
+     */
+    public String getName(int ordinal){
+        return names[ordinal];
+    }
+
+    /**
+     * @param ordinal The garment's ordinal : int
+     * @return The garment's description : String
+     */
+    public String getDescription(int ordinal){
+        return descriptions[ordinal];
+    }
+
+    /**
+     * @return The number of garments in the columns : int
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Builds a Garment object back up out of the columns, for handing out as a search result
+     * @param ordinal The garment's ordinal : int
+     * @return A new Garment equal in content to the one that was added : Garment
+     */
+    public Garment materialise(int ordinal){
+        byte[] valueOrdinals = new byte[enumOrdinals.length];
+        for(int i = 0; i < enumOrdinals.length; i++){
+            valueOrdinals[i] = enumOrdinals[i] == null ? ABSENT : enumOrdinals[i][ordinal];
+        }
+        return materialise(productCodes[ordinal], prices[ordinal], names[ordinal], descriptions[ordinal],
+                brandIds[ordinal], sizeMasks[ordinal], valueOrdinals);
+    }
+
+    /**
+     * Builds a Garment object out of a garment's stored values, wherever they are stored
+     * @param productCode The garment's product code : long
+     * @param price The garment's price : double
+     * @param name The garment's name : String
+     * @param description The garment's description : String
+     * @param brandId The garment's BrandDictionary id, or ABSENT : int
+     * @param sizeMask bit mask of the garment's available sizes, or ABSENT : short
+     * @param valueOrdinals The garment's value for each enum valued Filter, indexed by Filter ordinal, or ABSENT : byte[]
+     * @return A new Garment : Garment
+     */
+    public static Garment materialise(long productCode, double price, String name, String description, int brandId,
+                                      short sizeMask, byte[] valueOrdinals){
+        Map<Filter, Object> filterMap = new LinkedHashMap<>();
+        for(Filter filter : Filter.values()) { // declared in the order garments are described in
+            if(filter == Filter.SIZE){
+                if(sizeMask == ABSENT) continue;
+                Set<Size> sizes = EnumSet.noneOf(Size.class);
+                for(Size s : SIZES) if((sizeMask & (1 << s.ordinal())) != 0) sizes.add(s);
+                filterMap.put(filter, sizes);
+            } else if(filter == Filter.BRAND){
+                if(brandId != ABSENT) filterMap.put(filter, BrandDictionary.nameOf(brandId));
+            } else {
+                byte valueOrdinal = valueOrdinals[filter.ordinal()];
+                if(valueOrdinal != ABSENT) filterMap.put(filter, ENUM_CONSTANTS[filter.ordinal()][valueOrdinal]);
+            }
+        }
+        return new Garment(name, productCode, price, description, new GarmentSpecs(filterMap));
+    }
+}
@@ -0,0 +1,96 @@
+import java.text.DecimalFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Formats each garment's description once and remembers it, so painting a page of results, or showing the garment
+ * being ordered, is a lookup rather than formatting work. Descriptions are kept by product code for the most recently
+ * described garments, up to CAPACITY of them. A description is only used while the garment it was made from still has
+ * the same name, caption, price and specs, so a garment replaced in the inventory is described afresh.
+ * <p>
+ * The cache can be shared between any number of threads.
+ */
+public final class GarmentDescriptions {
+    /*------------------FIELDS------*/
+    public static final int CAPACITY = 20_000; // descriptions kept, a few MB of text
+    // DecimalFormat isn't thread safe, so each thread gets its own rather than every call making one
+    private static final ThreadLocal<DecimalFormat> prices = ThreadLocal.withInitial(() -> new DecimalFormat("0.00"));
+    // product code -> its description, least recently used first; guarded by itself
+    private static final Map<Long, Described> described = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Described> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    /**
+     * A description, and what it was made from
+     * @param name The garment's name : String
+     * @param caption The garment's description : String
+     * @param price The garment's price : double
+     * @param specs The garment's specs : GarmentSpecs
+     * @param text The description : String
+     */
+    private record Described(String name, String caption, double price, GarmentSpecs specs, String text) {
+        /**
+         * @param garment A garment with this one's product code : Garment
+         * @return true if the text still describes it, false if it has changed since : boolean
+         */
+        boolean describes(Garment garment) {
+            return Double.compare(price, garment.getPrice()) == 0 && name.equals(garment.getName())
+                    && caption.equals(garment.getDescription()) && specs.equals(garment.getGarmentSpecs());
+        }
+    }
+
+    private GarmentDescriptions() {
+        // static methods only
+    }
+
+    /**
+     * Gets a garment's description, as Garment.getGarmentInformation gives it, formatting it only if it hasn't been
+     * already
+     * @param garment The garment : Garment
+     * @return Its description : String
+     */
+    public static String describe(Garment garment) {
+        Described cached;
+        synchronized (described) {
+            cached = described.get(garment.getProductCode());
+        }
+        if (cached != null && cached.describes(garment)) return cached.text();
+        String text = garment.getGarmentInformation(); // formatted outside the lock, so threads warming up don't queue
+        synchronized (described) {
+            described.put(garment.getProductCode(), new Described(garment.getName(), garment.getDescription(),
+                    garment.getPrice(), garment.getGarmentSpecs(), text));
+        }
+        return text;
+    }
+
+    /**
+     * Describes garments ahead of time, in parallel, so the first searches shown don't have to. At most CAPACITY of
+     * them are described, as any more would only push each other out.
+     * @param garments The garments to describe : Stream
+     */
+    public static void warm(Stream<Garment> garments) {
+        garments.unordered().limit(CAPACITY).parallel().forEach(GarmentDescriptions::describe);
+    }
+
+    /**
+     * Formats a price to two decimal places, as every description shows it
+     * @param price The price : double
+     * @return The price, such as 12.50 : String
+     */
+    public static String formatPrice(double price) {
+        return prices.get().format(price);
+    }
+
+    /**
+     * Forgets every description
+     */
+    public static void clear() {
+        synchronized (described) {
+            described.clear();
+        }
+    }
+}
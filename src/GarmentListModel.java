@@ -0,0 +1,53 @@
+import javax.swing.AbstractListModel;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The rows of the results list: a view straight onto a search's results, which copies nothing and builds nothing.
+ * The JList only asks for the rows it is painting, so a search with 100,000 results costs the list no more than one
+ * with 10. The results can still be growing, as a SearchWorker hands them over; resultsAdded shows the new ones.
+ */
+public class GarmentListModel extends AbstractListModel<Garment> {
+    /*------------------FIELDS------*/
+    private static final long serialVersionUID = 1L;
+    private List<Garment> garments = Collections.emptyList();
+    private int shown = 0; // how many of them the list has been told about
+
+    /**
+     * Shows a new search's results in place of the old ones
+     * @param garments The results, in order; a RandomAccess list, such as SearchResults : List
+     */
+    public void setGarments(List<Garment> garments) {
+        int oldSize = shown;
+        this.garments = garments;
+        shown = 0;
+        if (oldSize > 0) fireIntervalRemoved(this, 0, oldSize - 1);
+        resultsAdded();
+    }
+
+    /**
+     * Shows the results added to the end of the list being viewed since it was last shown
+     */
+    public void resultsAdded() {
+        int oldSize = shown;
+        shown = garments.size();
+        if (shown > oldSize) fireIntervalAdded(this, oldSize, shown - 1);
+    }
+
+    /**
+     * @return The results being shown : List
+     */
+    public List<Garment> getGarments() {
+        return garments;
+    }
+
+    @Override
+    public int getSize() {
+        return shown;
+    }
+
+    @Override
+    public Garment getElementAt(int index) {
+        return garments.get(index);
+    }
+}
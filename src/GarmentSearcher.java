@@ -1,37 +1,116 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
+/**
+ * One shopper's window onto the catalog. Everything the shopper does (their search, its results, the garment they
+ * choose) is held by this window's SearchSession, so any number of windows can be open on the same catalog at once.
+ */
 public class GarmentSearcher {
 
     private static final String filePath = "./inventory.txt";
-    private static Inventory allGarments; // our inventory class
+    private static final String ordersPath = "./orders.journal";
+    private static final long PARALLEL_LOAD_BYTES = 16 << 20; // inventory files at least this big are parsed on every core
+    private static final long MAPPED_SNAPSHOT_BYTES = 256 << 20; // snapshots at least this big are searched in place
+    private static final long SEARCH_CACHE_BYTES = 64 << 20; // recent search results kept, shared by every window
+    private static final String usage = "Usage: java GarmentSearcher [--watch] [--windows n]";
     private static final String appName = "Garment Geek";
     private static final String iconPath = "images/icon.png";
-    private static JFrame mainWindow = null;
-    private static JComboBox<String> optionsCombo = null;
-    private static JPanel searchView = null;
-    private static Garment choice; // eventually becomes our determined Garment choice
-    private static Map<String, Garment> optionsMap;
-    // HashMap holding the String containing its name and product code, and the Garment that corresponds to the String
+    private static final int ICON_SIZE = 64; // the window icon is scaled down to this, which is as big as it's shown
+    private static final long IMAGE_CACHE_BYTES = 32 << 20; // decoded images kept, shared by every window
+    // pictures, decoded off the event thread; thumbnails are kept beside them for the next run
+    private static final ImageService images = new ImageService(Path.of("images", "products"),
+            Path.of("images", "thumbnails"), IMAGE_CACHE_BYTES);
+    private final SearchSession session; // this shopper's search, results and choice
+    private final JFrame mainWindow;
+    private JList<Garment> resultsList = null; // the rows are a GarmentListModel over the session's results
+    private JLabel resultsCount = null; // how many results there are, or have been found so far
+    private SearchWorker searching = null; // the search running in the background, if there is one
+    private JPanel searchView = null;
 /*--------------------------METHODS-------------*/
 
     /**
-     * main method - creates mainFrame and starts program, initialising key fields.
-     * @param args - NA
+     * main method - loads the inventory and opens a window onto it
+     * @param args - "--watch" to reload the inventory whenever the file changes, "--windows n" to open n windows
      */
     public static void main(String[] args) {
-        allGarments = loadInventory(filePath);
+        int windows = windowCount(args); // before anything is loaded, so a mistyped option fails straight away
+        GarmentCatalog allGarments = loadInventory(filePath); // our inventory, shared by every window
+        OrderJournal orders = openOrderJournal(); // and where their orders go
+        List<String> options = Arrays.asList(args);
+        if (options.contains("--watch")) watchInventory(allGarments);
+        // a mapped catalog never changes, but nor are its results worth keeping: a scan builds only the matches
+        GarmentCatalog searched = allGarments instanceof Inventory inventory
+                ? new SearchCache(inventory, SEARCH_CACHE_BYTES) : allGarments;
+        Thread warming = new Thread(() -> GarmentDescriptions.warm( // while the first window opens
+                allGarments.search(new GarmentSpecs(new HashMap<>(), 0, Double.MAX_VALUE))), "description warm-up");
+        warming.setDaemon(true);
+        warming.start();
+        SwingUtilities.invokeLater(() -> {
+            for (int i = 0; i < windows; i++) new GarmentSearcher(new SearchSession(searched, orders)).show();
+        });
+    }
+
+    /**
+     * Reads how many windows to open from the command line, printing how it's used and ending the program if there's
+     * an option it doesn't know, or the number of windows isn't a whole number of at least 1
+     * @param args The command line : String[]
+     * @return The number of windows to open, 1 if not given : int
+     */
+    private static int windowCount(String[] args) {
+        int windows = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--watch")) continue;
+            if (args[i].equals("--windows") && i + 1 < args.length) {
+                try {
+                    windows = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    windows = 0;
+                }
+                if (windows >= 1) continue;
+            }
+            System.out.println(usage);
+            System.exit(1);
+        }
+        return windows;
+    }
+
+    /**
+     * Constructor for GarmentSearcher, creating the window but not showing it. Closing the window ends just this
+     * shopper's session; the program ends when the last window is closed.
+     * @param session The shopper's session : SearchSession
+     */
+    public GarmentSearcher(SearchSession session) {
+        this.session = session;
         mainWindow = new JFrame(appName);
-        mainWindow.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        ImageIcon icon = new ImageIcon(iconPath);
-        mainWindow.setIconImage(icon.getImage());
+        mainWindow.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        images.thumbnail(Path.of(iconPath), ICON_SIZE, ICON_SIZE).thenAccept(icon -> {
+            if (icon != null) SwingUtilities.invokeLater(() -> mainWindow.setIconImage(icon));
+        });
         mainWindow.setMinimumSize(new Dimension(300, 300));
+        mainWindow.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                cancelSearch(); // no one is left to see the results
+            }
+        });
+    }
+
+    /**
+     * Shows the window, starting at the search view
+     */
+    public void show() {
         searchView = generateSearchView();
         mainWindow.setContentPane(searchView);
         mainWindow.pack();
@@ -43,15 +122,16 @@ public class GarmentSearcher {
      * fields in the search-view
      * @return a searchView object with default values
      */
-    public static SearchView refreshSearchView() {
-        return new SearchView(allGarments.getAllBrands(), allGarments.findMaxPrice());
+    public SearchView refreshSearchView() {
+        GarmentCatalog allGarments = session.getCatalog();
+        return new SearchView(allGarments.getAllBrands(), allGarments.findMaxPrice(), images);
     }
 
 
     /**
      * Method to generate the order view of our app, using a UserDetailsView object
      */
-    public static void generateOrderView(Garment choice) {
+    public void generateOrderView(Garment choice) {
         JPanel orderWindow = new JPanel(); // contains our entry fields and a button
         orderWindow.setLayout(new BorderLayout()); // N E S W layout
 
@@ -74,7 +154,7 @@ public class GarmentSearcher {
      * new Geek object, which is passed along with the Garment to the submitOrder method.
      * @param orderView : The UserDetailsView object that has the information that the user entered.
      */
-    public static void prepareOrder(UserDetailsView orderView) {
+    public void prepareOrder(UserDetailsView orderView) {
         String name = orderView.getName();
         if (name == null) {
             JOptionPane.showMessageDialog(mainWindow,
@@ -95,14 +175,14 @@ public class GarmentSearcher {
         }
         String message = orderView.getMessage();
         Geek geek = new Geek(name, email);
-        submitOrder(geek, choice, message);
+        submitOrder(geek, orderView.getSize(), message);
     }
 
     /**
      * Method to generate the search view of our app, using a SearchView object
      * @return a JPanel representing the search screen with a new button in compass format
      */
-    public static JPanel generateSearchView() {
+    public JPanel generateSearchView() {
         // contains search fields and button
         JPanel searchWindow = new JPanel();
         searchWindow.setLayout(new BorderLayout());
@@ -111,11 +191,18 @@ public class GarmentSearcher {
         JPanel searchCriteriaPanel = searchView.generateSearchView();
         // add it to the main panel
         searchWindow.add(searchCriteriaPanel, BorderLayout.CENTER);
-        // add a search button
+        // add a search button, with a count of the garments the criteria match so far beside it
         JButton search = new JButton("Search");
+        JLabel matchCount = new JLabel(" ");
+        LiveCount liveCount = new LiveCount(session.getCatalog(), searchView::toGarmentSpecs, matchCount);
+        searchView.setCriteriaListener(liveCount::criteriaChanged); // counts again whenever the user changes something
+        liveCount.criteriaChanged(); // and once for the defaults
         ActionListener actionListener = e -> conductSearch(searchView); // creates a GarmentSpecs object with the input and searches with it
         search.addActionListener(actionListener);
-        searchWindow.add(search, BorderLayout.SOUTH);
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        searchPanel.add(matchCount, BorderLayout.WEST);
+        searchPanel.add(search, BorderLayout.CENTER);
+        searchWindow.add(searchPanel, BorderLayout.SOUTH);
         // pad and return the searchWindow
         searchWindow.add(Box.createRigidArea(new Dimension(20, 0)), BorderLayout.WEST);
         searchWindow.add(Box.createRigidArea(new Dimension(20, 0)), BorderLayout.EAST);
@@ -126,27 +213,15 @@ public class GarmentSearcher {
      * method used to extract user-entered data to create a GarmentSpecs object which will be used to search the database of Garments for a match
      * @param searchView an instance of the SearchView class (used to generate JPanels for user to enter/select filters)
      */
-    public static void conductSearch(SearchView searchView) {
-        // map containing the Filter:Object pairs as we have done previously
-        Map<Filter, Object> criteria = new LinkedHashMap<>();
-        GarmentType type = searchView.getInputGarmentType();
-        if (type == GarmentType.SELECT_TYPE) {
+    public void conductSearch(SearchView searchView) {
+        if (searchView.getInputGarmentType() == GarmentType.SELECT_TYPE) {
             JOptionPane.showMessageDialog(mainWindow,
                     "You must select a type of Garment!.\n",
                     "Invalid search",
                     JOptionPane.INFORMATION_MESSAGE, null);
             return;
-        } // if the input was valid, add it to the map
-        criteria.put(Filter.GARMENT_TYPE, type);
-        // brands
-        Set<String> brands = searchView.getUserBrands(); // must not be of size 1 AND only containing "NA" to go in the map
-        if (!brands.isEmpty()) {
-            brands.remove("NA");
-            criteria.put(Filter.BRAND, brands);
         }
-        // sizes
-        Set<Size> sizes = searchView.getSizes();
-        if (sizes.isEmpty()) {
+        if (searchView.getSizes().isEmpty()) {
             JOptionPane.showMessageDialog(mainWindow,
                     "You must select at least one size to continue. \n",
                     "invalid search",
@@ -154,50 +229,63 @@ public class GarmentSearcher {
                     null);
             return;
         }
-        criteria.put(Filter.SIZE, sizes);
-        // material
-        Material material = searchView.getMaterial();
-        if (!material.equals(Material.NA)) criteria.put(Filter.MATERIAL, material);
-        // initialise price variables
-        double userMinPrice = searchView.getUserMinPrice();
-        double userMaxPrice = searchView.getUserMaxPrice();
-        Neckline neckline; // initialise now to keep in scope
-        SleeveType sleeve;
-        HoodieStyle hoodieStyle;
-        PocketType pocketType;
-        if (type.equals(GarmentType.T_SHIRT)) {
-            neckline = searchView.getNeckline(); // for all below - must not be NA to be added to the map
-            if (!neckline.equals(Neckline.NA)) criteria.put(Filter.NECKLINE, neckline);
-            sleeve = searchView.getSleeveType();
-            if (!sleeve.equals(SleeveType.NA)) criteria.put(Filter.SLEEVE_TYPE, sleeve);
-        } else if (type.equals(GarmentType.HOODIE)) {
-            hoodieStyle = searchView.getHoodieStyle();
-            if (!hoodieStyle.equals(HoodieStyle.NA)) criteria.put(Filter.HOODIE_STYLE, hoodieStyle);
-            pocketType = searchView.getPocketType();
-            if (!pocketType.equals(PocketType.NA)) criteria.put(Filter.POCKET_TYPE, pocketType);
-        }
-        // create a garmentSpecs object with the HashMap and the prices
-        GarmentSpecs garmentSpecs = new GarmentSpecs(criteria, userMinPrice, userMaxPrice);
-        List<Garment> potentialMatches = allGarments.findMatch(garmentSpecs); // find some matches
-        showResults(potentialMatches); // show results with the matches
+        // if the input was valid, the search view puts the Filter:Object pairs together as we have done previously
+        GarmentSpecs garmentSpecs = searchView.toGarmentSpecs();
+        searchInBackground(garmentSpecs); // find some matches, showing them as they're found
+    }
+
+    /**
+     * Starts searching on a background thread, cancelling any search still running, and shows the results view
+     * straight away. The matches are added to it a chunk at a time as they're found, with a running count, so the
+     * first of them show up just as quickly however many there are. If there turn out to be none, the shopper is
+     * told and taken back to the search view.
+     * @param garmentSpecs The user's 'dream garment' : GarmentSpecs
+     */
+    public void searchInBackground(GarmentSpecs garmentSpecs) {
+        cancelSearch();
+        Stream<Garment> matches = session.beginSearch(garmentSpecs);
+        showResults(session.getResults()); // empty for now
+        resultsCount.setText("Searching...");
+        GarmentListModel resultsModel = (GarmentListModel) resultsList.getModel();
+        searching = new SearchWorker(matches, chunk -> {
+            session.addResults(chunk);
+            resultsModel.resultsAdded();
+            resultsCount.setText(String.format("Found %,d matching garments so far...", resultsModel.getSize()));
+        }, total -> {
+            searching = null;
+            if (total == 0) noResults();
+            else resultsCount.setText(String.format("Matches found! The following %,d garments match your criteria:", total));
+        }, failure -> {
+            searching = null;
+            searchFailed(failure);
+        });
+        searching.execute();
+    }
+
+    /**
+     * Stops the search running in the background, if there is one. Nothing more it finds is shown.
+     */
+    private void cancelSearch() {
+        if (searching == null) return;
+        searching.cancel(false); // it checks between one garment and the next
+        searching = null;
     }
 
     /**
      * This method presents the second screen of the program to the user, displaying results and allowing the user
-     * to select a match from a dropdown list by calling other functions.
-     * @param potentialMatches an ArrayList of potentially matching Garments
+     * to select a match from a list by calling other functions.
+     * @param potentialMatches an ArrayList of potentially matching Garments, which may still be growing
      */
-    public static void showResults(List<Garment> potentialMatches) {
-        if (potentialMatches.size() == 0) {
-            noResults();
-            return; // go back if there are no results
-        }
+    public void showResults(List<Garment> potentialMatches) {
         // create panel for the second view for viewing results
         JPanel results = new JPanel();
         results.setLayout(new BorderLayout());
-        results.add(Box.createRigidArea(new Dimension(0,10)), BorderLayout.NORTH); // add padding to the top
+        resultsCount = new JLabel(String.format("Matches found! The following %,d garments match your criteria:",
+                potentialMatches.size()));
+        resultsCount.setBorder(BorderFactory.createEmptyBorder(10, 0, 5, 0)); // add padding to the top
+        results.add(resultsCount, BorderLayout.NORTH);
         results.add(generateGarmentDescriptions(potentialMatches), BorderLayout.CENTER); // add the scroll pane with garment descriptions
-        results.add(selectFromResultsPanel(), BorderLayout.SOUTH); // add the dropdown list and search again button
+        results.add(selectFromResultsPanel(), BorderLayout.SOUTH); // add the order and search again buttons
         results.add(Box.createRigidArea(new Dimension(20, 0)), BorderLayout.WEST); // padding on right
         results.add(Box.createRigidArea(new Dimension(20, 0)), BorderLayout.EAST); // padding on left
         mainWindow.setContentPane(results); // set main window to the results panel
@@ -207,7 +295,7 @@ public class GarmentSearcher {
     /**
      * a method used to generate a popup box informing the user that their search returned no results
      */
-    public static void noResults(){
+    public void noResults(){
         JOptionPane.showMessageDialog(mainWindow,
                 "Unfortunately your search returned no compatible garments.\n",
                 "No Compatible Garments",
@@ -216,6 +304,21 @@ public class GarmentSearcher {
         reGenerateSearchView(false); // return to search view - false = don't reset it
     }
 
+    /**
+     * a method used to generate a popup box telling the user their search couldn't be finished, and taking them back
+     * to the search view to try again
+     * @param failure What went wrong : Throwable
+     */
+    public void searchFailed(Throwable failure){
+        resultsCount.setText("Search failed");
+        JOptionPane.showMessageDialog(mainWindow,
+                "Sorry, your search couldn't be finished:\n" + failure.getMessage() + "\nPlease try again.",
+                "Search Failed",
+                JOptionPane.ERROR_MESSAGE,
+                null);
+        reGenerateSearchView(false); // return to search view - false = don't reset it
+    }
+
     /*
      * TODO: No todo, just here to grab your attention as to my justification on including search results from previous searches.
      * In terms of the argument on whether you should wipe the SearchView clean when you return to it, I believe it's
@@ -233,7 +336,7 @@ public class GarmentSearcher {
      * method to return to the Search view.
      * @param reset : boolean : resets the search view to default values
      */
-    public static void reGenerateSearchView(boolean reset) {
+    public void reGenerateSearchView(boolean reset) {
         if (reset) { // if we toggle to true - resets the search view to default values
             searchView = generateSearchView();
         }
@@ -243,69 +346,60 @@ public class GarmentSearcher {
 
 
     /**
-     * method to generate JScrollPane containing descriptions of matching garments
+     * method to generate JScrollPane containing descriptions of matching garments. The descriptions are rows of a
+     * JList over the search's results, painted by one GarmentCellRenderer as they scroll into view, so however many
+     * garments matched, the same few components are made and only the visible rows are ever described.
      * @param potentialMatches an arraylist of Garment objects that match the user's selection criteria
-     * @return JScrollPane a scroll pane containing a collection of non-editable JTextAreas each representing
-     * a description of 1 matching Garment
+     * @return JScrollPane a scroll pane containing a list with the description of each matching Garment
      */
-    public static JScrollPane generateGarmentDescriptions(List<Garment> potentialMatches) {
-        Map<String, Garment> optionsMap = new LinkedHashMap<>(); // create a mew HashMap
-        optionsMap.put("Select garment", null); // place this key:value pair inside it
-        // contains one text area per Garment
-        JPanel descriptions = new JPanel();
-        descriptions.setBorder(BorderFactory.createTitledBorder("Matches found! The following garments match your criteria: "));
-        descriptions.setLayout(new BoxLayout(descriptions, BoxLayout.Y_AXIS)); // stack vertically
-        descriptions.add(Box.createRigidArea(new Dimension(0, 10))); // padding
-        // generates a description of each Garment
-        for (Garment potentialGarment : potentialMatches) {
-            descriptions.add(describeIndividualGarment(potentialGarment));
-            optionsMap.put(potentialGarment.getName() + " (" + potentialGarment.getProductCode() + ")", potentialGarment); // for the drop-down list
-        }
-        // cast all the keys in the HashMap to strings to store them inside the JComboBox
-        optionsCombo = new JComboBox<>(optionsMap.keySet().toArray(new String[0]));
-        setOptionsMap(optionsMap); // since we're finished with the Map, and we need it stored as a field, we should use the set method
+    public JScrollPane generateGarmentDescriptions(List<Garment> potentialMatches) {
+        GarmentListModel resultsModel = new GarmentListModel();
+        resultsModel.setGarments(potentialMatches);
+        resultsList = new JList<>(resultsModel);
+        resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        GarmentCellRenderer renderer = new GarmentCellRenderer(images);
+        resultsList.setCellRenderer(renderer);
+        // fixed row sizes mean the list never has to measure every row to lay itself out
+        resultsList.setFixedCellWidth(GarmentCellRenderer.CELL_WIDTH);
+        resultsList.addMouseListener(new MouseAdapter() { // double-clicking a garment orders it
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) checkUserGarmentSelection(resultsList);
+            }
+        });
         // creates a scroll bar, so we can fit many options!
-        JScrollPane scrollPane = new JScrollPane(descriptions);
-        scrollPane.setPreferredSize(new Dimension(300, 450));
+        JScrollPane scrollPane = new JScrollPane(resultsList);
+        scrollPane.setPreferredSize(new Dimension(GarmentCellRenderer.CELL_WIDTH + 40, 450));
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED); // show the scroll bar only if we need it
-        SwingUtilities.invokeLater(() -> scrollPane.getViewport().setViewPosition(new Point(0, 0))); // default to top of scrollable area
+        resultsList.setFixedCellHeight(renderer.rowHeight(resultsList)); // tall enough for any garment
+        scrollPane.getVerticalScrollBar().setUnitIncrement(resultsList.getFixedCellHeight() / 4); // the wheel moves a few lines
         return scrollPane;
     }
 
-    /**
-     * Helper method to describe each individual garment in the results view
-     * @param garment The garment to be described
-     * @return JTextArea object with the description of the garment.
-     */
-    public static JTextArea describeIndividualGarment(Garment garment) {
-        JTextArea description = new JTextArea(garment.getGarmentInformation());
-        description.setEditable(false); // cannot edit this field
-        description.setLineWrap(true); // allows the line to flow over into the next line
-        description.setWrapStyleWord(true); // keeps words from being split up in the flow
-        return description;
-    }
-
     /**
      * Method that facilitates the selecting of a Garment from the results view, and calls the necessary method
      * depending on the action taken. If the "search again" button is clicked, the search view is regenerated, and if
-     * a Garment is chosen from the dropdown list, the particular garment is checked for validity.
-     * @return JPanel containing a "search again" button and a drop-down list to select a chosen Garment
+     * a Garment is selected in the results list and ordered, the particular garment is checked for validity.
+     * @return JPanel containing a "search again" button and a button to order the selected Garment
      */
-    public static JPanel selectFromResultsPanel() {
+    public JPanel selectFromResultsPanel() {
         JLabel noneMessage = new JLabel("Don't like these results? Try searching again!");
         JButton searchAgain = new JButton("Search again");
-        // action listener that regenerates and shows the search view
-        ActionListener actionListener = e -> reGenerateSearchView(false);
+        // action listener that stops the search and regenerates and shows the search view
+        ActionListener actionListener = e -> {
+            cancelSearch();
+            reGenerateSearchView(false);
+        };
         searchAgain.addActionListener(actionListener); // add it to the button
-        Map<String, Garment> optionsMap = getOptionsMap(); // get our HashMap ensuring data encapsulation
-        optionsCombo.setSelectedItem(optionsMap.get("Select garment")); // the default
-        ActionListener actionListenerChoice = e -> checkUserGarmentSelection(optionsMap, optionsCombo); // we make the check here
-        optionsCombo.addActionListener(actionListenerChoice);  // which is added to the drop-down box
+        JButton order = new JButton("Order selected garment");
+        order.setEnabled(false); // until a garment is selected
+        resultsList.addListSelectionListener(e -> order.setEnabled(!resultsList.isSelectionEmpty()));
+        order.addActionListener(e -> checkUserGarmentSelection(resultsList)); // we make the check here
         // create a panel to hold our buttons (FlowLayout[left to right])
         JPanel buttonOptionPanel = new JPanel();
-        buttonOptionPanel.add(optionsCombo); // drop down list on the left
+        buttonOptionPanel.add(order); // order button on the left
         buttonOptionPanel.add(searchAgain); // search again button on the right
-        // create and return a new JPanel that holds a border, our instructional messages and the buttons/drop-down list
+        // create and return a new JPanel that holds a border, our instructional messages and the buttons
         JPanel selectionPanel = new JPanel();
         selectionPanel.setLayout(new BoxLayout(selectionPanel, BoxLayout.Y_AXIS)); // stack vertically
         selectionPanel.add(Box.createRigidArea(new Dimension(0, 10))); // padding
@@ -318,179 +412,132 @@ public class GarmentSearcher {
     }
 
     /**
-     * This method determines if the selected option from the dropDown list was a null option or if it is a Garment.
-     * Makes nothing happen if it was a null option (what we want) and generates the order view if it was not.
-     * @param options : The Map containing the String : Garment to compare our choice from the dropDown list
-     * @param optionsCombo : The dropdown list with which we compare to the HashMap
+     * This method determines if a garment is selected in the results list. Makes nothing happen if nothing is
+     * (what we want) and generates the order view if one is.
+     * @param resultsList : The list of the session's results, to take our choice from
      */
-    public static void checkUserGarmentSelection(Map<String, Garment> options, JComboBox<String> optionsCombo) {
-        String garmentName = (String) optionsCombo.getSelectedItem(); // get the choice from the dropdown list
-        if (options.get(garmentName) != null) { // if it's a null Garment, then nothing happens
-            choice = options.get(garmentName); // otherwise choice is the Garment we want
+    public void checkUserGarmentSelection(JList<Garment> resultsList) {
+        // the list's rows are the session's results, so the selected row is the result's position
+        Garment choice = session.choose(resultsList.getSelectedIndex()); // if nothing is selected, then nothing happens
+        if (choice != null) {
+            cancelSearch(); // the shopper has found what they wanted
             generateOrderView(choice); // generate an order view with the Garment as the choice
         }
     }
 
     /**
-     * Method to write the details of a particular order to a text file, for Greek Geek to then fulfill
+     * Method to place the chosen garment's order in the order journal, for Greek Geek to then fulfill. The shopper
+     * goes straight back to the search view, and is told once the order is safely written.
+     * If it's sold out in the size chosen, the shopper stays on the order form to choose another.
      * @param geek : A geek object : The person who made the order
-     * @param Garment : A Garment object : The garment being ordered
+     * @param size : The size ordered, or null if the garment doesn't come in sizes : Size
      * @param message : String : The message included with the order
      */
-    public static void submitOrder(Geek geek, Garment Garment, String message) {
-        String filePath = geek.getName().replace(" ","_")+"_"+Garment.getProductCode()+".txt";
-        Path path = Path.of(filePath); // Alex_Robertson_222222222.txt is what is outputted from this
-        String lineToWrite = "Order details:\n\t" + // Order details:
-                "Name: "+geek.getName()+            // Alex
-                "\n\tEmail Address: "+geek.getEmail()+ // geek@geekmail.com
-                "\n\tItem: "+Garment.getName()+" ("+Garment.getProductCode()+")" + // walterWhite (22222222)
-                "\n\tMessage from geek: " + message;  // I don't have any money!!!
+    public void submitOrder(Geek geek, Size size, String message) {
+        CompletableFuture<Long> placed;
         try {
-            Files.writeString(path, lineToWrite); // tries to write the above string to the text file at the path
-        }catch (IOException io){ // but can crash the program for myriad reasons
-            JOptionPane.showMessageDialog(mainWindow, // Use a message dialog for this instead of println
-                    "Order could not be placed. \nError message: "+io.getMessage(),
-                    "Error with Order",
-                    JOptionPane.ERROR_MESSAGE,
+            placed = session.order(geek, size, message);
+        } catch (IllegalStateException soldOut) {
+            JOptionPane.showMessageDialog(mainWindow,
+                    soldOut.getMessage() + ". \nPlease choose another size.",
+                    appName,
+                    JOptionPane.INFORMATION_MESSAGE,
                     null);
-            System.exit(0);
+            return; // back to the order form
         }
-        JOptionPane.showMessageDialog(mainWindow, // if success, Let the customer know, or they may be confused!
-                "Message sent! \nOne of our friendly staff will be in touch shortly.",
-                appName,
-                JOptionPane.INFORMATION_MESSAGE,
-                null);
+        placed.whenComplete((orderNumber, failure) -> SwingUtilities.invokeLater(() -> {
+            if (failure != null) { // the disk is full, or gone
+                JOptionPane.showMessageDialog(mainWindow, // Use a message dialog for this instead of println
+                        "Order could not be placed. \nError message: "+failure.getMessage(),
+                        "Error with Order",
+                        JOptionPane.ERROR_MESSAGE,
+                        null);
+                return;
+            }
+            JOptionPane.showMessageDialog(mainWindow, // if success, Let the customer know, or they may be confused!
+                    "Message sent! Your order number is " + orderNumber + ". \nOne of our friendly staff will be in touch shortly.",
+                    appName,
+                    JOptionPane.INFORMATION_MESSAGE,
+                    null);
+        }));
         reGenerateSearchView(true); // go back to search view, resetting it in the process.
     }
 
     /**
      * This method reads in information from a text file, in this case generally our "Inventory.txt" file.
-     * Stores all the pertinent information in a HashMap which is stored within a GarmentSpecs object, and anything
-     * not placed in a HashMap (name, product code etc.) is stored inside a Garment object.
+     * If there's a binary snapshot of the file that is newer than it, the snapshot is loaded instead, which skips
+     * parsing altogether; a big enough snapshot is memory-mapped and searched in place rather than loaded onto the
+     * heap. Otherwise the file is streamed through an InventoryParser a block at a time rather than
+     * read in whole, and each garment goes straight into the Inventory as its line is parsed. Big files are split up
+     * and parsed on every core. A fresh snapshot is then saved for next time.
      * @param filePath String representation of the filepath where the text file in question is stored
      * @return Instantiation of inventory object, containing information on all stored Garments.
      */
-    public static Inventory loadInventory(String filePath) {
-        Inventory allGarments = new Inventory(); // instantiate an Inventory object
+    public static GarmentCatalog loadInventory(String filePath) {
         Path path = Path.of(filePath); // look for file at the location specified by the argument
-        List<String> fileContents = null; // holds each line of the text file
+        Path snapshot = InventorySnapshot.pathFor(path);
+        if (InventorySnapshot.isNewer(snapshot, path)) {
+            Inventory allGarments = new Inventory();
+            try {
+                if (Files.size(snapshot) >= MAPPED_SNAPSHOT_BYTES) return MappedInventory.open(snapshot);
+                InventorySnapshot.load(snapshot, allGarments);
+                return allGarments;
+            } catch (IOException io) { // out of date format or damaged, so fall back to the text file
+                System.out.println("Snapshot could not be loaded (" + io.getMessage() + "), reading " + filePath + " instead");
+            }
+        }
+        Inventory allGarments = new Inventory(); // instantiate an Inventory object
         try {
-            fileContents = Files.readAllLines(path); // load the lines of the text file into the ArrayList
+            if (Files.size(path) >= PARALLEL_LOAD_BYTES) {
+                InventoryParser.loadParallel(path, allGarments, Runtime.getRuntime().availableProcessors());
+            } else {
+                InventoryParser.load(path, allGarments);
+            }
         }catch (IOException io){    // If an IO exception is thrown..
             System.out.println("File could not be found"); // Read a message
             System.exit(0); // terminate
+        }catch (InventoryFormatException e){ // a line of the file that doesn't make sense
+            System.out.println("Error in file. "+e.getMessage()+". Terminating. \nError message: "+e.getDetail());
+            System.exit(0);
         }
-        for(int i=1;i<fileContents.size();i++){  // for every element in fileContents
-            String[] info = fileContents.get(i).split("\\["); // split on opening brackets
-            String[] singularInfo = info[0].split(",");     // and split that on commas
-            String sizesRaw = info[1].replace("]","");  // replace all closing brackets with empty space
-            String description = info[2].replace("]","");  // as above
-
-            GarmentType garmentType = null;  // instantiate new Garment
-            try {  // replace hyphens with underscores, and catch any IllegalArgumentException that may be caused by bad text
-                garmentType = GarmentType.valueOf(singularInfo[0].replace("-","_").toUpperCase()); //error catching
-            }catch (IllegalArgumentException e){
-                System.out.println("Error in file. type data could not be parsed for garment on line "+(i+1)+". Terminating. \nError message: "+e.getMessage());
-                System.exit(0);
-            }
-            String name = singularInfo[1];
-
-            long productCode = 0;
-            try{
-                productCode = Long.parseLong(singularInfo[2]); // parse the product code into a Long
-            }catch (NumberFormatException n) { // could cause a NumberFormatException
-                System.out.println("Error in file. Product code could not be parsed for garment on line "+(i+1)+". Terminating. \nError message: "+n.getMessage());
-                System.exit(0);
-            }
-
-            double price = 0;
-            try{
-                price = Double.parseDouble(singularInfo[3]); // parse the price into a Double
-            }catch (NumberFormatException n){
-                System.out.println("Error in file. Price could not be parsed for garment on line "+(i+1)+". Terminating. \nError message: "+n.getMessage());
-                System.exit(0);
-            }
-
-            String brand = singularInfo[4];
-
-            Material material = null;
-            try{
-                material = Material.valueOf(singularInfo[5].toUpperCase().replace(" ","_"));
-            }catch (IllegalArgumentException e){ // bad input into parsing an Enum can cause this error
-                System.out.println("Error in file. Material data could not be parsed for garment on line "+(i+1)+". Terminating. \nError message: "+e.getMessage());
-                System.exit(0);
-            }
-            Neckline neckline = null;
-            try{
-                neckline = Neckline.valueOf(singularInfo[6].toUpperCase());
-            }catch (IllegalArgumentException e){
-                System.out.println("Error in file. Neckline data could not be parsed for t-shirt on line "+(i+1)+". Terminating. \nError message: "+e.getMessage());
-                System.exit(0);
-            }
-            SleeveType sleeveType = null;
-            try{
-                sleeveType = SleeveType.valueOf(singularInfo[7].toUpperCase().replace(" ","_"));
-            }catch (IllegalArgumentException e){
-                System.out.println("Error in file. Sleeve type data could not be parsed for t-shirt on line "+(i+1)+". Terminating. \nError message: "+e.getMessage());
-                System.exit(0);
-            }
-            PocketType pocketType = null;
-            try{
-                pocketType = PocketType.valueOf(singularInfo[8].toUpperCase());
-            }catch (IllegalArgumentException e){
-                System.out.println("Error in file. Pocket type data could not be parsed for hoodie on line "+(i+1)+". Terminating. \nError message: "+e.getMessage());
-                System.exit(0);
-            }
-            HoodieStyle hoodieStyle = null;
-            try{
-                hoodieStyle = HoodieStyle.valueOf(singularInfo[9].toUpperCase().replace(" ","_"));
-            }catch (IllegalArgumentException e){
-                System.out.println("Error in file. Style data could not be parsed for hoodie on line "+(i+1)+". Terminating. \nError message: "+e.getMessage());
-                System.exit(0);
-            }
-
-            Set<Size> sizes = new HashSet<>(); // instantiate new HashSet to hold available sizes
-            for(String s: sizesRaw.split(",")){ // split the sizeRaw by commas and iterate through the Strings
-                Size size = Size.S; // instantiate new Size object
-                try {
-                    size = Size.valueOf(s); // read in the correct Size constant through the string
-                }catch (IllegalArgumentException e){  // if it doesn't match a constant we'll end up here
-                    System.out.println("Error in file. Size data could not be parsed for t-shirt on line "+(i+1)+". Terminating. \nError message: "+e.getMessage());
-                    System.exit(0);
-                }
-                sizes.add(size); // add the size to the HashSet
-            }
-
-            Map<Filter,Object> filterMap = new LinkedHashMap<>(); // this is the map we pass to the GarmentSpecs object
-            filterMap.put(Filter.GARMENT_TYPE,garmentType); // place GarmentType
-            filterMap.put(Filter.BRAND,brand); // place the brand
-            filterMap.put(Filter.MATERIAL,material); // place the material constant
-            filterMap.put(Filter.SIZE,sizes); // sizeSet
-            if(!neckline.equals(Neckline.NA)) filterMap.put(Filter.NECKLINE,neckline); // only place if no NA
-            if(!sleeveType.equals(SleeveType.NA)) filterMap.put(Filter.SLEEVE_TYPE,sleeveType); //
-            if(!hoodieStyle.equals(HoodieStyle.NA)) filterMap.put(Filter.HOODIE_STYLE,hoodieStyle); //
-            if(!pocketType.equals(PocketType.NA)) filterMap.put(Filter.POCKET_TYPE,pocketType); //
-
-            GarmentSpecs dreamGarment = new GarmentSpecs(filterMap); // GarmentSpecs is instantiated with the HashMap
-
-            Garment Garment = new Garment(name,productCode,price,description,dreamGarment); // everything else goes here, including the GarmentSpecs object
-            allGarments.addGarment(Garment); // add it to the inventory object
+        try {
+            allGarments.writeSnapshot(snapshot);
+        } catch (IOException io) { // not fatal, the text file will just be parsed again next time
+            System.out.println("Snapshot could not be saved: " + io.getMessage());
         }
         return allGarments; // return the Inventory
     }
 
     /**
-     * @return </String, Garment> map that holds the results from a search
+     * Opens the order journal, which is closed (waiting for any orders still being written) when the program ends
+     * @return The order journal : OrderJournal
      */
-    public static Map<String, Garment> getOptionsMap() {
-        return new LinkedHashMap<>(optionsMap);
+    public static OrderJournal openOrderJournal() {
+        try {
+            OrderJournal orders = OrderJournal.open(Path.of(ordersPath), OrderJournal.SyncPolicy.everyOrder());
+            Runtime.getRuntime().addShutdownHook(new Thread(orders::close));
+            return orders;
+        } catch (IOException io) {
+            System.out.println("Order journal could not be opened: " + io.getMessage());
+            System.exit(0);
+            return null;
+        }
     }
 
     /**
-     * Method to set the HashMap when it changes, creating a new LinkedHashMap so as not to corrupt data
-     * @param optionsMap The new HashMap with which to replace the old with.
+     * Starts reloading the inventory in the background whenever the file changes, so price changes and new stock
+     * show up in searches without a restart. Only an inventory held on the heap can be changed.
+     * @param allGarments The inventory loaded from the file : GarmentCatalog
      */
-    public static void setOptionsMap(Map<String, Garment> optionsMap) {
-        GarmentSearcher.optionsMap = new LinkedHashMap<>(optionsMap);
+    private static void watchInventory(GarmentCatalog allGarments) {
+        if (!(allGarments instanceof Inventory inventory)) {
+            System.out.println("A memory-mapped inventory can't be reloaded, restart to pick up changes");
+            return;
+        }
+        try {
+            new InventoryReloader(inventory, Path.of(filePath)).watch();
+        } catch (IOException | InventoryFormatException e) { // not fatal, searches just won't see changes
+            System.out.println("Inventory won't be reloaded: " + e.getMessage());
+        }
     }
 }
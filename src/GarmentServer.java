@@ -0,0 +1,454 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless server mode: the garment search and ordering, as JSON over HTTP, for many shoppers at once.
+ * <pre>
+ * GET  /search?garment_type=hoodie&amp;brand=Lacoder,Tommy Bugfinder&amp;size=M&amp;min_price=10&amp;max_price=40&amp;limit=20
+ *      any Filter can be given, by its name in lower case; several values can be comma separated or repeated;
+ *      in_stock=true leaves out garments sold out in every size searched for; sort=price_ascending, price_descending,
+ *      name or product_code gives one page of limit garments in that order, with a cursor to pass back for the next
+ * GET  /brands                           every brand with its number of garments
+ * GET  /prices?garment_type=t-shirt      lowest and highest price, of one type of garment or of everything
+ * POST /orders  {"name": "...", "email": "...", "productCode": 123, "size": "M", "message": "..."}
+ *      size is optional; an order for a size takes one from its stock, and fails with 409 if it's sold out
+ * PUT  /stock   {"productCode": 123, "size": "M", "count": 25}
+ *      sets how many of a garment there are in a size, after a stock take or a delivery; from then on its orders in
+ *      every size it comes in take from its stock, and the sizes not set yet never run out
+ * </pre>
+ * Each request gets its own virtual thread where the JVM has them, so a shopper waiting on a slow order write
+ * holds up nobody else; searches themselves never wait, since the catalog is read without locks.
+ */
+public class GarmentServer {
+    /*------------------FIELDS------*/
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_LIMIT = 100; // garments returned by a search that doesn't give a limit
+    private static final Filter[] FILTERS = Filter.values();
+    private final GarmentCatalog catalog;
+    private final OrderJournal orders;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    static {
+        // the server writes a response's headers and body separately, so without this the body can sit waiting for
+        // the client's delayed ACK, adding 40ms to every request
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * main method - loads the inventory and serves it until the process is stopped
+     * @param args - the port to listen on, 8080 if not given
+     * @throws IOException if the port can't be listened on
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GarmentServer server = new GarmentServer(GarmentSearcher.loadInventory("./inventory.txt"),
+                GarmentSearcher.openOrderJournal(), port);
+        server.start();
+        System.out.println("Serving garments on http://localhost:" + server.getPort() + "/");
+    }
+
+    /**
+     * Constructor for GarmentServer. Nothing is served until start() is called.
+     * @param catalog The garments to serve : GarmentCatalog
+     * @param orders Where orders are placed : OrderJournal
+     * @param port The port to listen on, or 0 for any free one : int
+     * @throws IOException if the port can't be listened on
+     */
+    public GarmentServer(GarmentCatalog catalog, OrderJournal orders, int port) throws IOException {
+        this.catalog = catalog;
+        this.orders = orders;
+        server = HttpServer.create(new InetSocketAddress(port), 1024); // room for a burst of connections
+        server.createContext("/search", exchange -> handle(exchange, "GET", this::search));
+        server.createContext("/brands", exchange -> handle(exchange, "GET", this::brands));
+        server.createContext("/prices", exchange -> handle(exchange, "GET", this::prices));
+        server.createContext("/orders", exchange -> handle(exchange, "POST", this::order));
+        server.createContext("/stock", exchange -> handle(exchange, "PUT", this::stock));
+        executor = requestExecutor();
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Gets an executor that runs each request on a new virtual thread. Virtual threads only exist from Java 21, so
+     * they are looked up by reflection, and on older JVMs a pool that grows a platform thread per concurrent request
+     * is used instead.
+     * @return The executor : ExecutorService
+     */
+    private static ExecutorService requestExecutor() {
+        try {
+            Method virtualThreads = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreads.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Starts serving requests, in the background
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving, letting requests already being answered finish
+     * @param delaySeconds The longest to wait for them : int
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * @return The port being listened on : int
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * One of the server's endpoints
+     */
+    private interface Endpoint {
+        /**
+         * @param exchange The request : HttpExchange
+         * @return The response : Reply
+         * @throws IOException if the request can't be read
+         */
+        Reply respond(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * A response: a status code and a JSON body
+     */
+    private static class Reply {
+        private final int status;
+        private final String json;
+
+        private Reply(int status, String json) {
+            this.status = status;
+            this.json = json;
+        }
+    }
+
+    /**
+     * Answers a request, turning anything that goes wrong into a JSON error
+     * @param exchange The request : HttpExchange
+     * @param method The HTTP method the endpoint takes : String
+     * @param endpoint The endpoint : Endpoint
+     */
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) {
+        try {
+            Reply reply;
+            try {
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    reply = error(405, "Use " + method);
+                } else {
+                    reply = endpoint.respond(exchange);
+                }
+            } catch (IllegalArgumentException e) { // a request that doesn't make sense
+                reply = error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                reply = error(500, "Something went wrong: " + e);
+            }
+            byte[] body = reply.json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(reply.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // the client has gone, there's no one to tell
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @param status The HTTP status code : int
+     * @param message What went wrong : String
+     * @return A reply with a JSON error message : Reply
+     */
+    private static Reply error(int status, String message) {
+        return new Reply(status, "{\"error\":" + Json.quote(String.valueOf(message)) + "}");
+    }
+
+    /**
+     * GET /search: finds the garments matching the query, reporting the catalog version that answered. The matches
+     * are counted without being built, and only the first limit of them are built.
+     * @param exchange The request : HttpExchange
+     * @return The total number of matches, and the first limit of them : Reply
+     */
+    private Reply search(HttpExchange exchange) {
+        Map<String, List<String>> query = query(exchange);
+        int limit = (int) number(query, "limit", DEFAULT_LIMIT);
+        if (limit < 0) throw new IllegalArgumentException("limit can't be negative");
+        if (query.containsKey("sort")) return page(query, limit);
+        GarmentSpecs specs = specs(query);
+        // the count and the garments both come from the version the inventory is on now
+        GarmentCatalog searched = catalog instanceof Inventory inventory ? inventory.snapshot() : catalog;
+        long version = searched instanceof InventoryVersion now ? now.getVersion() : 0;
+        List<Garment> first = searched.search(specs).limit(limit).toList();
+        StringBuilder json = new StringBuilder("{\"version\":").append(version)
+                .append(",\"count\":").append(searched.count(specs)).append(",\"garments\":[");
+        for (int i = 0; i < first.size(); i++) {
+            if (i > 0) json.append(',');
+            appendGarment(json, first.get(i));
+        }
+        return new Reply(200, json.append("]}").toString());
+    }
+
+    /**
+     * GET /search?sort=...: one page of sorted matches, and a cursor for the next page if there is one. Only the
+     * page is found, however many garments match.
+     * @param query The query parameters, including sort, and cursor for any page but the first : Map
+     * @param limit The most garments to put on the page : int
+     * @return The page : Reply
+     */
+    private Reply page(Map<String, List<String>> query, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1 for a sorted search");
+        SortKey sortKey = sortKey(query.get("sort"));
+        List<String> cursor = query.get("cursor");
+        SearchPage page = catalog.findPage(specs(query), sortKey, limit,
+                PageCursor.parse(cursor == null || cursor.isEmpty() ? null : cursor.get(0), sortKey));
+        StringBuilder json = new StringBuilder("{\"version\":").append(page.getVersion())
+                .append(",\"next\":").append(page.hasMore() ? Json.quote(page.getNextCursor().toString()) : "null")
+                .append(",\"garments\":[");
+        for (int i = 0; i < page.size(); i++) {
+            if (i > 0) json.append(',');
+            appendGarment(json, page.get(i));
+        }
+        return new Reply(200, json.append("]}").toString());
+    }
+
+    /**
+     * @param values The sort parameter : List
+     * @return The SortKey it names, ignoring case and treating hyphens as underscores : SortKey
+     */
+    private static SortKey sortKey(List<String> values) {
+        String name = values.isEmpty() ? "" : values.get(0).toUpperCase(Locale.ROOT).replace('-', '_');
+        for (SortKey sortKey : SortKey.values()) if (sortKey.name().equals(name)) return sortKey;
+        throw new IllegalArgumentException("sort must be one of price_ascending, price_descending, name or product_code");
+    }
+
+    /**
+     * Builds a GarmentSpecs from a search's query string, the same way the search view does from its fields
+     * @param query The query parameters : Map
+     * @return The dream garment : GarmentSpecs
+     */
+    private static GarmentSpecs specs(Map<String, List<String>> query) {
+        Map<Filter, Object> criteria = new EnumMap<>(Filter.class);
+        for (Filter filter : FILTERS) {
+            List<String> values = query.get(filter.name().toLowerCase(Locale.ROOT));
+            if (values == null) continue;
+            Set<Object> parsed = new LinkedHashSet<>();
+            for (String value : values) parsed.add(filter == Filter.BRAND ? value : constant(filter, value));
+            // one value on its own, like the search view gives, or a Set of any of them (including no brands at all)
+            criteria.put(filter, parsed.size() == 1 && filter != Filter.SIZE ? parsed.iterator().next() : parsed);
+        }
+        List<String> inStock = query.getOrDefault("in_stock", List.of("false"));
+        return new GarmentSpecs(criteria, number(query, "min_price", 0), number(query, "max_price", Double.MAX_VALUE),
+                Boolean.parseBoolean(inStock.get(0)));
+    }
+
+    /**
+     * Looks up one of a Filter's enum constants by name, ignoring case and treating spaces and hyphens as
+     * underscores, as the inventory file does
+     * @param filter The Filter : Filter
+     * @param value The constant's name : String
+     * @return The constant : Enum
+     */
+    private static Enum<?> constant(Filter filter, String value) {
+        Class<? extends Enum<?>> type = filter == Filter.SIZE ? Size.class : GarmentColumns.enumType(filter);
+        String name = value.trim().toUpperCase(Locale.ROOT).replace(' ', '_').replace('-', '_');
+        for (Enum<?> constant : type.getEnumConstants()) if (constant.name().equals(name)) return constant;
+        throw new IllegalArgumentException("There is no " + filter.name().toLowerCase(Locale.ROOT) + " called \"" + value + "\"");
+    }
+
+    /**
+     * GET /brands: every brand, with how many garments it has
+     * @param exchange The request : HttpExchange
+     * @return The brands, in alphabetical order : Reply
+     */
+    private Reply brands(HttpExchange exchange) {
+        StringBuilder json = new StringBuilder("{\"brands\":[");
+        List<String> brands = new ArrayList<>(catalog.getAllBrands());
+        Collections.sort(brands);
+        for (int i = 0; i < brands.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"name\":").append(Json.quote(brands.get(i)))
+                    .append(",\"count\":").append(catalog.getBrandCount(brands.get(i))).append('}');
+        }
+        return new Reply(200, json.append("]}").toString());
+    }
+
+    /**
+     * GET /prices: the lowest and highest price of one type of garment, or of all of them
+     * @param exchange The request : HttpExchange
+     * @return The prices : Reply
+     */
+    private Reply prices(HttpExchange exchange) {
+        List<String> type = query(exchange).get("garment_type");
+        double min, max;
+        if (type == null) {
+            min = catalog.findMinPrice();
+            max = catalog.findMaxPrice();
+        } else {
+            if (type.size() != 1) throw new IllegalArgumentException("Give one garment_type, or none");
+            GarmentType garmentType = (GarmentType) constant(Filter.GARMENT_TYPE, type.get(0));
+            min = catalog.findMinPrice(garmentType);
+            max = catalog.findMaxPrice(garmentType);
+        }
+        return new Reply(200, "{\"min\":" + min + ",\"max\":" + max + "}");
+    }
+
+    /**
+     * POST /orders: places an order for a garment, the same way the order view does. The size must be one the garment
+     * comes in, and can only be left out for a garment that doesn't come in sizes.
+     * @param exchange The request, with a JSON body of name, email, productCode and an optional size and message : HttpExchange
+     * @return The order's number, once it's safely in the order journal : Reply
+     * @throws IOException if the request can't be read
+     */
+    private Reply order(HttpExchange exchange) throws IOException {
+        Map<String, Object> order = Json.parseObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        String name = text(order, "name");
+        String email = text(order, "email");
+        if (!(order.get("productCode") instanceof Double code) || code != Math.rint(code)) {
+            throw new IllegalArgumentException("productCode must be a whole number");
+        }
+        Object message = order.getOrDefault("message", "");
+        Size size = order.get("size") instanceof String sizeName ? (Size) constant(Filter.SIZE, sizeName) : null;
+        Garment garment = catalog.findGarment(code.longValue());
+        if (garment == null) return error(404, "There is no garment with product code " + code.longValue());
+        garment.checkOrderSize(size);
+        // only an Inventory counts stock; a mapped catalog takes every order, as the app always did
+        Inventory stock = size != null && catalog instanceof Inventory inventory ? inventory : null;
+        if (stock != null && !stock.reserve(garment.getProductCode(), size, 1)) {
+            return error(409, "Sold out in size " + size.name());
+        }
+        try { // this request's thread waits, but the journal carries on writing everyone else's orders meanwhile
+            long orderNumber = orders.append(new Geek(name, email), garment, size, String.valueOf(message)).join();
+            return new Reply(201, "{\"productCode\":" + garment.getProductCode() + ",\"order\":" + orderNumber + "}");
+        } catch (CompletionException e) {
+            if (stock != null) stock.release(garment.getProductCode(), size, 1); // it's not sold after all
+            return error(500, "Order could not be placed: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * PUT /stock: sets how many of a garment there are in a size. Only an Inventory counts stock.
+     * @param exchange The request, with a JSON body of productCode, size and count : HttpExchange
+     * @return The garment's stock in that size now : Reply
+     * @throws IOException if the request can't be read
+     */
+    private Reply stock(HttpExchange exchange) throws IOException {
+        Map<String, Object> stock = Json.parseObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        if (!(stock.get("productCode") instanceof Double code) || code != Math.rint(code)) {
+            throw new IllegalArgumentException("productCode must be a whole number");
+        }
+        if (!(stock.get("count") instanceof Double count) || count != Math.rint(count) || count < 0
+                || count >= StockLevels.UNLIMITED) {
+            throw new IllegalArgumentException("count must be a whole number, no less than 0");
+        }
+        Size size = (Size) constant(Filter.SIZE, text(stock, "size"));
+        if (!(catalog instanceof Inventory inventory)) return error(501, "This catalog doesn't count stock");
+        if (inventory.findGarment(code.longValue()) == null) {
+            return error(404, "There is no garment with product code " + code.longValue());
+        }
+        inventory.setStock(code.longValue(), size, count.intValue()); // refuses a size the garment doesn't come in
+        return new Reply(200, "{\"productCode\":" + code.longValue() + ",\"size\":" + Json.quote(size.name())
+                + ",\"stock\":" + inventory.getStock(code.longValue(), size) + "}");
+    }
+
+    /**
+     * @param object A parsed JSON object : Map
+     * @param member The member that must be a non-blank string : String
+     * @return Its value : String
+     */
+    private static String text(Map<String, Object> object, String member) {
+        if (!(object.get(member) instanceof String value) || value.isBlank()) {
+            throw new IllegalArgumentException(member + " must be given");
+        }
+        return value;
+    }
+
+    /**
+     * Writes a garment as a JSON object
+     * @param json Where to write it : StringBuilder
+     * @param garment The garment : Garment
+     */
+    private static void appendGarment(StringBuilder json, Garment garment) {
+        json.append("{\"productCode\":").append(garment.getProductCode())
+                .append(",\"name\":").append(Json.quote(garment.getName()))
+                .append(",\"price\":").append(garment.getPrice())
+                .append(",\"description\":").append(Json.quote(garment.getDescription()));
+        for (Map.Entry<Filter, Object> filter : garment.getGarmentSpecs().getAllFilters().entrySet()) {
+            json.append(',').append(Json.quote(filter.getKey().name().toLowerCase(Locale.ROOT))).append(':');
+            if (filter.getValue() instanceof Collection<?> values) {
+                json.append('[');
+                int i = 0;
+                for (Object value : values) json.append(i++ > 0 ? "," : "").append(Json.quote(jsonName(value)));
+                json.append(']');
+            } else {
+                json.append(Json.quote(jsonName(filter.getValue())));
+            }
+        }
+        json.append('}');
+    }
+
+    /**
+     * @param value A filter value : Object
+     * @return The enum constant's name, which the search endpoint accepts back, or the brand : String
+     */
+    private static String jsonName(Object value) {
+        return value instanceof Enum<?> constant ? constant.name() : String.valueOf(value);
+    }
+
+    /**
+     * Decodes a request's query string. Each parameter can be repeated, or hold several comma separated values.
+     * @param exchange The request : HttpExchange
+     * @return Each parameter's values : Map
+     */
+    private static Map<String, List<String>> query(HttpExchange exchange) {
+        Map<String, List<String>> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            List<String> values = parameters.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> new ArrayList<>());
+            for (String part : value.split(",")) if (!part.isBlank()) values.add(part.trim());
+        }
+        return parameters;
+    }
+
+    /**
+     * @param query The query parameters : Map
+     * @param name A numeric parameter : String
+     * @param otherwise Its value if it isn't given : double
+     * @return Its value : double
+     */
+    private static double number(Map<String, List<String>> query, String name, double otherwise) {
+        List<String> values = query.get(name);
+        if (values == null || values.isEmpty()) return otherwise;
+        try {
+            return Double.parseDouble(values.get(0));
+        } catch (NumberFormatException n) {
+            throw new IllegalArgumentException(name + " must be a number, not \"" + values.get(0) + "\"");
+        }
+    }
+}
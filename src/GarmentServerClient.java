@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Puts a GarmentServer under load: many shoppers searching at once, and a few placing orders. Reports how many
+ * requests were answered, how fast, and with which status codes.
+ */
+public class GarmentServerClient {
+    /*------------------FIELDS------*/
+    private static final String[] TYPES = {"hoodie", "t-shirt"};
+    private static final String[] SIZES = {"XS", "S", "M", "L", "XL", "XXL"};
+    private static final Pattern PRODUCT_CODE = Pattern.compile("\"productCode\":(\\d+)");
+
+    /**
+     * main method
+     * @param args - the server's address (http://localhost:8080 if not given), the number of requests (1000) and
+     *             the number in flight at once (100)
+     * @throws IOException if the server can't be reached at all
+     * @throws InterruptedException if interrupted while waiting for the responses
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String server = args.length > 0 ? args[0] : "http://localhost:8080";
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int inFlight = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Random random = new Random(42);
+        List<Long> productCodes = productCodes(client, server); // real garments to order
+        int[] statuses = new int[600];
+        long[] latencies = new long[requests];
+        long start = System.nanoTime();
+        for (int sent = 0; sent < requests; sent += inFlight) {
+            List<CompletableFuture<Void>> batch = new ArrayList<>();
+            for (int r = sent; r < Math.min(requests, sent + inFlight); r++) {
+                HttpRequest request = r % 50 == 49 ? order(server, productCodes, random) : search(server, random);
+                int slot = r;
+                long requestStart = System.nanoTime();
+                batch.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).handle((response, failure) -> {
+                    latencies[slot] = System.nanoTime() - requestStart;
+                    synchronized (statuses) {
+                        statuses[failure == null ? response.statusCode() : 0]++; // 0 for no response at all
+                    }
+                    return null;
+                }));
+            }
+            CompletableFuture.allOf(batch.toArray(CompletableFuture[]::new)).join();
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        System.out.printf("%d requests in %d ms (%.0f per second)%n", requests, elapsed / 1_000_000,
+                requests / (elapsed / 1e9));
+        System.out.printf("latency: median %.1f ms, 99th percentile %.1f ms%n",
+                latencies[requests / 2] / 1e6, latencies[Math.min(requests - 1, requests * 99 / 100)] / 1e6);
+        for (int status = 0; status < statuses.length; status++) {
+            if (statuses[status] > 0) System.out.println((status == 0 ? "no response" : "HTTP " + status) + ": " + statuses[status]);
+        }
+    }
+
+    /**
+     * @return A search for a random type of garment in a random size and price range : HttpRequest
+     */
+    private static HttpRequest search(String server, Random random) {
+        int minPrice = random.nextInt(50);
+        String query = "garment_type=" + TYPES[random.nextInt(TYPES.length)] + "&size=" + SIZES[random.nextInt(SIZES.length)]
+                + "&min_price=" + minPrice + "&max_price=" + (minPrice + random.nextInt(100)) + "&limit=20";
+        return HttpRequest.newBuilder(URI.create(server + "/search?" + query)).GET().build();
+    }
+
+    /**
+     * Asks the server for some of its garments' product codes
+     * @return The product codes : List
+     * @throws IOException if the server can't be reached
+     * @throws InterruptedException if interrupted while waiting for it
+     */
+    private static List<Long> productCodes(HttpClient client, String server) throws IOException, InterruptedException {
+        String json = client.send(HttpRequest.newBuilder(URI.create(server + "/search?limit=100")).GET().build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        List<Long> productCodes = new ArrayList<>();
+        Matcher productCode = PRODUCT_CODE.matcher(json);
+        while (productCode.find()) productCodes.add(Long.parseLong(productCode.group(1)));
+        if (productCodes.isEmpty()) productCodes.add(0L); // an empty catalog: every order will be a 404
+        return productCodes;
+    }
+
+    /**
+     * @return An order for one of the product codes, or now and then one that doesn't exist : HttpRequest
+     */
+    private static HttpRequest order(String server, List<Long> productCodes, Random random) {
+        long productCode = random.nextInt(10) == 0 ? -1 : productCodes.get(random.nextInt(productCodes.size()));
+        String json = "{\"name\":\"Load Test\",\"email\":\"load@test.com\",\"productCode\":" + productCode
+                + ",\"message\":" + Json.quote("order #" + random.nextInt(1000)) + "}";
+        return HttpRequest.newBuilder(URI.create(server + "/orders"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+}
@@ -2,9 +2,41 @@ import java.util.*;
 
 public class GarmentSpecs {
     /*--------------------FIELDS---*/
+    private static final String[] NO_BRANDS = new String[0];
     private final double minPrice;
     private final double maxPrice;
     private final Map<Filter,Object> filterMap;
+    /* typed form of filterMap, worked out once in the constructor so that matches() is a handful of primitive
+       compares: a bit per Filter present, and per Filter a bit mask of the enum ordinals (or sizes) it holds */
+    private final int filterBits;
+    private final long[] valueMasks = new long[Filter.values().length];
+    private final String[] brandNames; // sorted, so two specs' brands can be compared by name without ids
+    private volatile BrandIds brandIds; // brandNames' ids, as of the last time the BrandDictionary was looked at
+    private final boolean inStockOnly; // leave out garments with none left in the sizes wanted
+
+    /**
+     * The BrandDictionary ids of some brands. Brands are only looked up, never added to the BrandDictionary, so
+     * searching for any number of made up brands can't fill it up: a brand no garment has had yet gets no id, and
+     * is looked up again once the dictionary has grown, in case a garment with that brand has been added since.
+     * Garments' brands are added when the garments are, see GarmentColumns.
+     */
+    private static class BrandIds {
+        private final int dictionarySize; // how many brands the dictionary had when they were looked up
+        private final int[] ids; // sorted, leaving out brands that had no id
+
+        private BrandIds(String[] names) {
+            dictionarySize = BrandDictionary.size(); // before looking up, so a brand added meanwhile is looked for again
+            int[] ids = new int[names.length];
+            int count = 0;
+            for(String name : names){
+                int id = BrandDictionary.lookup(name);
+                if(id != GarmentColumns.ABSENT) ids[count++] = id;
+            }
+            ids = Arrays.copyOf(ids, count);
+            Arrays.sort(ids);
+            this.ids = ids;
+        }
+    }
 
     /**
      * Constructor for GarmentSpecs class, will create 'Search parameter' Garment objects
@@ -13,9 +45,39 @@ public class GarmentSpecs {
      * @param maxPrice The specified maximum price : int
      */
     public GarmentSpecs(Map<Filter,Object> filterMap, double minPrice, double maxPrice) {
+        this(filterMap, minPrice, maxPrice, false);
+    }
+
+    /**
+     * Constructor for GarmentSpecs class, for searches that can leave out garments that have sold out
+     * @param filterMap HashMap containing all the user's parameters : Map</Filter, /Object>
+     * @param minPrice The specified minimum price : int
+     * @param maxPrice The specified maximum price : int
+     * @param inStockOnly true to only find garments with at least one left in a size being searched for : boolean
+     */
+    public GarmentSpecs(Map<Filter,Object> filterMap, double minPrice, double maxPrice, boolean inStockOnly) {
+        this.inStockOnly=inStockOnly;
         this.minPrice=minPrice;
         this.maxPrice=maxPrice;
-        this.filterMap=new LinkedHashMap<>(filterMap);
+        this.filterMap=new EnumMap<>(Filter.class);
+        int filterBits = 0;
+        String[] brandNames = NO_BRANDS;
+        for(Map.Entry<Filter,Object> filter : filterMap.entrySet()){
+            Filter key = filter.getKey();
+            Object value = filter.getValue();
+            if(value instanceof Collection<?> values){ // copy it, so changes to the caller's Set can't get past the masks
+                value = Collections.unmodifiableSet(key == Filter.SIZE && !values.isEmpty()
+                        && values.stream().allMatch(v -> v instanceof Size)
+                        ? EnumSet.copyOf(castSizes(values)) : new LinkedHashSet<>(values)); // nor anyone else's changes
+            }
+            this.filterMap.put(key, value);
+            filterBits |= 1 << key.ordinal();
+            if(key == Filter.BRAND) brandNames = brandNamesOf(value);
+            else valueMasks[key.ordinal()] = valueMaskOf(key, value);
+        }
+        this.filterBits = filterBits;
+        this.brandNames = brandNames;
+        this.brandIds = new BrandIds(brandNames);
     }
 
     /**
@@ -23,9 +85,44 @@ public class GarmentSpecs {
      * @param filterMap HashMap containing all the user's parameters : Map</Filter, /Object>
      */
     public GarmentSpecs(Map<Filter,Object> filterMap) {
-        this.filterMap=new LinkedHashMap<>(filterMap);
-        minPrice = -1;
-        maxPrice = -1;
+        this(filterMap, -1, -1);
+    }
+
+    /**
+     * Gives the bit mask of the enum ordinals held by a single value or a Collection of values
+     * @param key The Filter the value belongs to : Filter
+     * @param value A single enum value, or a Collection of them : Object
+     * @return bit n set if the value's enum with ordinal n is held, ignoring anything of the wrong type : long
+     */
+    private static long valueMaskOf(Filter key, Object value){
+        Class<?> type = key == Filter.SIZE ? Size.class : GarmentColumns.enumType(key);
+        long mask = 0;
+        if(value instanceof Collection<?> values){
+            for(Object v : values) if(type.isInstance(v)) mask |= 1L << ((Enum<?>) v).ordinal();
+        } else if(type.isInstance(value)) mask = 1L << ((Enum<?>) value).ordinal();
+        return mask; // anything of the wrong type could never be equal to a real value, so it gets no bit
+    }
+
+    /**
+     * Gives the sorted names of a single brand or a Collection of them
+     * @param value A brand name, or a Collection of them : Object
+     * @return sorted brand names, without repeats, ignoring anything that isn't a String : String[]
+     */
+    private static String[] brandNamesOf(Object value){
+        Collection<?> brands = value instanceof Collection<?> values ? values : Collections.singletonList(value);
+        SortedSet<String> names = new TreeSet<>();
+        for(Object brand : brands) if(brand instanceof String name) names.add(name);
+        return names.toArray(NO_BRANDS);
+    }
+
+    /**
+     * Helper to get a Collection known to hold only sizes as one
+     * @param values A Collection of Size objects : Collection
+     * @return The same Collection : Collection
+     */
+    @SuppressWarnings("unchecked")
+    private static Collection<Size> castSizes(Collection<?> values){
+        return (Collection<Size>) values;
     }
 
     /**
@@ -43,20 +140,73 @@ public class GarmentSpecs {
         return maxPrice;
     }
 
+    /**
+     * @return true if garments without stock in the sizes wanted should be left out of the search : boolean
+     */
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
     /**
      * Gets the HashMap containing all the user's specified criteria
-     * @return The user's criteria : HashMap
+     * @return The user's criteria, as a read-only view : Map
      */
     public Map<Filter, Object> getAllFilters() {
-        return new HashMap<>(filterMap);
+        return Collections.unmodifiableMap(filterMap);
     }
 
     /**
      * Method to return a specific value of the HashMap given the key
      * @param key The key to return the value from : Filter
-     * @return The value from the key given : Object
+     * @return The value from the key given, read-only if it's a Collection : Object
+     */
+    public Object getFilter(Filter key){return filterMap.get(key);}
+
+    /**
+     * @param key The Filter in question : Filter
+     * @return true if these specs have a value for the Filter, false if not
      */
-    public Object getFilter(Filter key){return getAllFilters().get(key);}
+    public boolean hasFilter(Filter key){
+        return (filterBits & (1 << key.ordinal())) != 0;
+    }
+
+    /**
+     * Gets the typed form of a Filter's value(s). Not for BRAND, which uses getBrandIds.
+     * @param key The Filter in question : Filter
+     * @return bit n set if the enum (or Size) with ordinal n is one of the Filter's values : long
+     */
+    public long getValueMask(Filter key){
+        return valueMasks[key.ordinal()];
+    }
+
+    /**
+     * @return copy of the sorted BrandDictionary ids of the brand(s) in these specs, leaving out brands no garment
+     * has had yet : int[]
+     */
+    public int[] getBrandIds(){
+        return brandIds().clone();
+    }
+
+    /**
+     * @param brandId A BrandDictionary id : int
+     * @return true if the brand is one of the brands in these specs, false if not
+     */
+    public boolean hasBrandId(int brandId){
+        return Arrays.binarySearch(brandIds(), brandId) >= 0;
+    }
+
+    /**
+     * @return The sorted ids of the brands in these specs that have one, looking up again any that didn't if the
+     * BrandDictionary has grown since : int[]
+     */
+    private int[] brandIds(){
+        BrandIds ids = brandIds;
+        if(ids.ids.length < brandNames.length && ids.dictionarySize != BrandDictionary.size()){
+            ids = new BrandIds(brandNames);
+            brandIds = ids;
+        }
+        return ids.ids;
+    }
 
     /**
      * Method to return a String with information contained within the HashMap used in the GarmentSpecs object.
@@ -64,45 +214,118 @@ public class GarmentSpecs {
      */
     public String getGarmentSpecInfo(){
         StringBuilder description = new StringBuilder();
-        for(Filter key: filterMap.keySet()) description.append("\n").append(key).append(": ").append(getFilter(key));
+        for(Map.Entry<Filter,Object> filter: filterMap.entrySet()) description.append("\n").append(filter.getKey()).append(": ").append(filter.getValue());
         return description.toString();
     }
 
 
     /**
      * Method to compare information between two GarmentSpecs objects, their values, and returning true
-     * if they both match, otherwise returning false
+     * if they both match, otherwise returning false. Only Filters both objects have are compared, and a Set on
+     * either side matches if it shares any value with the other side. Nothing is allocated along the way.
      * @param garmentSpecs The garment to compare to : GarmentSpecs
      * @return true if the information compared matches, false if not
      */
     public boolean matches(GarmentSpecs garmentSpecs){
-        for(Filter key : garmentSpecs.getAllFilters().keySet()) {
-            if(this.getAllFilters().containsKey(key)){  // if they have the same key, compare
-                /* If both this garmentSpecs object's key value is a Set (or any other form of Collection), and the
-                   compared to GarmentSpecs object's key value is also a Set, compare them */
-                if(getFilter(key) instanceof Collection<?> && garmentSpecs.getFilter(key) instanceof Collection<?>){
-                    Set<Object> intersect = new HashSet<>((Collection<?>) garmentSpecs.getFilter(key));
-                    /* This colourful word spaghetti basically looks to see if there are any shared objects within the
-                       sets that we are comparing */
-                    intersect.retainAll((Collection<?>) getFilter(key));
-                    if(intersect.size()==0) return false;
-                }
-                // If the garmentSpecs object's key value we are comparing TO is a set, and this is not, compare them
-                else if(garmentSpecs.getFilter(key) instanceof Collection<?>){
-                    // does the set contain any items that are present as the key: value in the other's object?
-                    Set<Object> items = new HashSet<>((Collection<?>) garmentSpecs.getFilter(key));
-                    if(!items.contains(this.getFilter(key))) return false;
-                // If the GarmentSpecs object's key value we are comparing TO is NOT a set, and this is, compare them
-                } else if (getFilter(key) instanceof Collection<?>) {
-                    Set<Object> items = new HashSet<>((Collection<?>) getFilter(key));
-                    if(!items.contains(garmentSpecs.getFilter(key))) return false;
-                } // if the key's don't match up in the first place, we should move on to the next key
-                else if(!getFilter(key).equals(garmentSpecs.getFilter(key))) return false;
-            }
+        int shared = filterBits & garmentSpecs.filterBits; // if the keys don't match up, we move on to the next key
+        while(shared != 0){
+            int key = Integer.numberOfTrailingZeros(shared);
+            shared &= shared - 1; // clear the lowest bit, ready for the next key
+            if(key == Filter.BRAND.ordinal()){
+                if(!sharesBrand(garmentSpecs)) return false;
+            } else if((valueMasks[key] & garmentSpecs.valueMasks[key]) == 0) return false; // no shared values
+        }
+        return true;
+    }
 
+    /**
+     * Tells whether these specs, searched for, could only find garments that the broader specs would find too: their
+     * price range is inside the broader one, and every Filter the broader specs have, these have as well, with only
+     * values the broader specs have. A garment without a value for a Filter passes it either way, so it makes no
+     * difference to either.
+     * @param broader Specs searched for before : GarmentSpecs
+     * @return true if every garment matching these matches the broader specs : boolean
+     */
+    public boolean refines(GarmentSpecs broader){
+        if(minPrice < broader.minPrice || maxPrice > broader.maxPrice) return false;
+        if(broader.inStockOnly && !inStockOnly) return false;
+        if((broader.filterBits & ~filterBits) != 0) return false; // a Filter was dropped
+        int shared = broader.filterBits; // Filters only these specs have can only narrow them
+        while(shared != 0){
+            int key = Integer.numberOfTrailingZeros(shared);
+            shared &= shared - 1;
+            if(key == Filter.BRAND.ordinal()){
+                for(String brand : brandNames){ // a brand was added
+                    if(Arrays.binarySearch(broader.brandNames, brand) < 0) return false;
+                }
+            } else if((valueMasks[key] & ~broader.valueMasks[key]) != 0) return false; // a value was added
         }
         return true;
     }
 
+    /**
+     * Two specs are equal if they search for the same thing: the same Filters with the same values (however they were
+     * given, as a single value or a Collection, in whatever order), the same price range and the same stock rule.
+     * The typed form is compared rather than filterMap, so equal specs always find the same garments; brands are
+     * compared by name, as a brand's id depends on when a garment with it was first added.
+     * @param other The object to compare to : Object
+     * @return true if it's a GarmentSpecs searching for the same thing, false if not
+     */
+    @Override
+    public boolean equals(Object other){
+        if(this == other) return true;
+        if(!(other instanceof GarmentSpecs specs)) return false;
+        return filterBits == specs.filterBits && inStockOnly == specs.inStockOnly
+                && Double.compare(minPrice, specs.minPrice) == 0 && Double.compare(maxPrice, specs.maxPrice) == 0
+                && Arrays.equals(valueMasks, specs.valueMasks) && Arrays.equals(brandNames, specs.brandNames);
+    }
+
+    /**
+     * @return A hash of the typed form, consistent with equals : int
+     */
+    @Override
+    public int hashCode(){
+        int hash = 31 * filterBits + Boolean.hashCode(inStockOnly);
+        hash = 31 * hash + Double.hashCode(minPrice);
+        hash = 31 * hash + Double.hashCode(maxPrice);
+        hash = 31 * hash + Arrays.hashCode(valueMasks);
+        return 31 * hash + Arrays.hashCode(brandNames);
+    }
+
+    /**
+     * Looks for a brand in both these specs and another's. If either has an id for every one of its brands, any brand
+     * they share has an id, so the ids are compared; otherwise the names are.
+     * @param other The other specs : GarmentSpecs
+     * @return true if there is a brand in both, false if not
+     */
+    private boolean sharesBrand(GarmentSpecs other){
+        int[] ours = brandIds(), theirs = other.brandIds();
+        if(ours.length == brandNames.length || theirs.length == other.brandNames.length) return sharesBrand(ours, theirs);
+        int i = 0, j = 0;
+        while(i < brandNames.length && j < other.brandNames.length){
+            int order = brandNames[i].compareTo(other.brandNames[j]);
+            if(order == 0) return true;
+            if(order < 0) i++;
+            else j++;
+        }
+        return false;
+    }
+
+    /**
+     * Walks two sorted arrays of brand ids at once, looking for one they both hold
+     * @param ours Sorted brand ids : int[]
+     * @param theirs Sorted brand ids : int[]
+     * @return true if there is a brand id in both, false if not
+     */
+    private static boolean sharesBrand(int[] ours, int[] theirs){
+        int i = 0, j = 0;
+        while(i < ours.length && j < theirs.length){
+            if(ours[i] == theirs[j]) return true;
+            if(ours[i] < theirs[j]) i++;
+            else j++;
+        }
+        return false;
+    }
+
 
 }
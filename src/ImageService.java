@@ -0,0 +1,256 @@
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the pictures the windows show, off the event thread, at the size they're shown. A full-size image is decoded
+ * and scaled down once; the thumbnail is written to the thumbnail directory, so later runs read the small file
+ * instead, and kept in memory, so later windows don't read anything at all. Thumbnails in memory take up at most
+ * maxBytes, the least recently used dropped first.
+ * <p>
+ * Product pictures are found by product code, as productCode.jpg in the product directory. A picture that doesn't
+ * exist, or can't be read, loads as null and isn't looked for again until clear is called.
+ * <p>
+ * The service can be shared between any number of threads and windows.
+ */
+public class ImageService {
+    /*------------------FIELDS------*/
+    private static final int THREADS = 2; // decoding is slow, but a window only waits on a handful of images at once
+    private final Path productDirectory;
+    private final Path thumbnailDirectory;
+    private final long maxBytes;
+    private final ExecutorService decoder = Executors.newFixedThreadPool(THREADS, task -> {
+        Thread thread = new Thread(task, "image decoder");
+        thread.setDaemon(true); // closing the last window still ends the program
+        return thread;
+    });
+    // image and size -> its thumbnail, least recently used first; guarded by this, as is bytes
+    private final LinkedHashMap<String, BufferedImage> thumbnails = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes = 0;
+    private final Map<String, CompletableFuture<BufferedImage>> loading = new ConcurrentHashMap<>(); // so each loads once
+    private final Set<String> missing = ConcurrentHashMap.newKeySet(); // images that couldn't be loaded
+
+    /**
+     * Constructor for ImageService
+     * @param productDirectory Where product pictures are, by product code : Path
+     * @param thumbnailDirectory Where thumbnails are written, created if it doesn't exist : Path
+     * @param maxBytes The most the thumbnails in memory should take up : long
+     */
+    public ImageService(Path productDirectory, Path thumbnailDirectory, long maxBytes) {
+        this.productDirectory = productDirectory;
+        this.thumbnailDirectory = thumbnailDirectory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Loads an image scaled down to fit inside a width and height, keeping its shape; an image that already fits is
+     * left as it is
+     * @param image The image file : Path
+     * @param width The widest it should be : int
+     * @param height The tallest it should be : int
+     * @return Completes with the thumbnail, or null if the image can't be loaded, on a decoder thread if it wasn't
+     * loaded already : CompletableFuture
+     */
+    public CompletableFuture<BufferedImage> thumbnail(Path image, int width, int height) {
+        String key = key(image, width, height);
+        BufferedImage cached = cached(key);
+        if (cached != null || missing.contains(key)) return CompletableFuture.completedFuture(cached);
+        CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> existing = loading.putIfAbsent(key, created);
+        if (existing != null) return existing; // another window asked for it first
+        decoder.execute(() -> {
+            try {
+                created.complete(load(key, image, width, height));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            } finally {
+                loading.remove(key, created);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Loads a product's picture, scaled down to fit inside a width and height
+     * @param productCode The product's code : long
+     * @param width The widest it should be : int
+     * @param height The tallest it should be : int
+     * @return Completes with the thumbnail, or null if the product has no picture : CompletableFuture
+     */
+    public CompletableFuture<BufferedImage> productThumbnail(long productCode, int width, int height) {
+        return thumbnail(productImage(productCode), width, height);
+    }
+
+    /**
+     * Gets a product's picture only if it's in memory already, for painting code that can't wait for it
+     * @param productCode The product's code : long
+     * @param width The widest it should be : int
+     * @param height The tallest it should be : int
+     * @return The thumbnail, or null if it hasn't been loaded : BufferedImage
+     */
+    public BufferedImage cachedProductThumbnail(long productCode, int width, int height) {
+        return cached(key(productImage(productCode), width, height));
+    }
+
+    /**
+     * Shows an image in a label once it's loaded, straight away if it's in memory already. Call on the event thread.
+     * @param label The label to show it in : JLabel
+     * @param image The image file : Path
+     * @param width The widest it should be : int
+     * @param height The tallest it should be : int
+     */
+    public void show(JLabel label, Path image, int width, int height) {
+        BufferedImage cached = cached(key(image, width, height));
+        if (cached != null) {
+            label.setIcon(new ImageIcon(cached));
+            return;
+        }
+        thumbnail(image, width, height).thenAccept(loaded -> {
+            if (loaded != null) SwingUtilities.invokeLater(() -> label.setIcon(new ImageIcon(loaded)));
+        });
+    }
+
+    /**
+     * Reads a thumbnail from the thumbnail directory if one as new as the image is there, or else decodes the image,
+     * scales it down and writes the thumbnail for next time, then keeps it in memory
+     * @param key The image and size : String
+     * @param image The image file : Path
+     * @param width The widest it should be : int
+     * @param height The tallest it should be : int
+     * @return The thumbnail, or null if the image can't be loaded : BufferedImage
+     */
+    private BufferedImage load(String key, Path image, int width, int height) {
+        String name = image.getFileName().toString();
+        Path saved = thumbnailDirectory.resolve(name.replaceFirst("\\.[^.]*$", "") + "_" + width + "x" + height + ".png");
+        BufferedImage thumbnail = null;
+        try {
+            if (Files.isRegularFile(saved)
+                    && Files.getLastModifiedTime(saved).compareTo(Files.getLastModifiedTime(image)) >= 0) {
+                thumbnail = ImageIO.read(saved.toFile());
+            }
+            if (thumbnail == null) {
+                BufferedImage full = ImageIO.read(image.toFile());
+                if (full != null) {
+                    thumbnail = scale(full, width, height);
+                    save(thumbnail, saved);
+                }
+            }
+        } catch (IOException e) { // no such image, or not one ImageIO can read
+            thumbnail = null;
+        }
+        if (thumbnail == null) missing.add(key);
+        else store(key, thumbnail);
+        return thumbnail;
+    }
+
+    /**
+     * Scales an image down to fit inside a width and height, halving it at a time so no detail is skipped over
+     * @param image The image : BufferedImage
+     * @param width The widest it should be : int
+     * @param height The tallest it should be : int
+     * @return The scaled image, or the image itself if it fits already : BufferedImage
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        double ratio = Math.min((double) width / image.getWidth(), (double) height / image.getHeight());
+        if (ratio >= 1) return image;
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = image;
+        do {
+            int nextWidth = Math.max(targetWidth, scaled.getWidth() / 2);
+            int nextHeight = Math.max(targetHeight, scaled.getHeight() / 2);
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(scaled, 0, 0, nextWidth, nextHeight, null);
+            graphics.dispose();
+            scaled = next;
+        } while (scaled.getWidth() > targetWidth || scaled.getHeight() > targetHeight);
+        return scaled;
+    }
+
+    /**
+     * Writes a thumbnail to a temporary file, then moves it into place, so no one reads half of one
+     * @param thumbnail The thumbnail : BufferedImage
+     * @param saved Where it goes : Path
+     */
+    private void save(BufferedImage thumbnail, Path saved) {
+        try {
+            Files.createDirectories(thumbnailDirectory);
+            Path temporary = Files.createTempFile(thumbnailDirectory, "thumbnail", ".tmp");
+            try {
+                ImageIO.write(thumbnail, "png", temporary.toFile());
+                Files.move(temporary, saved, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) { // not fatal, the image is just decoded again next run
+            System.out.println("Thumbnail not saved: " + e.getMessage());
+        }
+    }
+
+    private synchronized BufferedImage cached(String key) {
+        return thumbnails.get(key);
+    }
+
+    /**
+     * Keeps a thumbnail in memory, then drops the least recently used until they're back under the limit
+     * @param key The image and size : String
+     * @param thumbnail The thumbnail : BufferedImage
+     */
+    private synchronized void store(String key, BufferedImage thumbnail) {
+        BufferedImage previous = thumbnails.put(key, thumbnail);
+        bytes += bytes(thumbnail) - (previous == null ? 0 : bytes(previous));
+        Iterator<BufferedImage> eldest = thumbnails.values().iterator();
+        while (bytes > maxBytes && thumbnails.size() > 1 && eldest.hasNext()) { // the newest stays, however big
+            bytes -= bytes(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Forgets every thumbnail in memory, and which images couldn't be loaded, leaving the thumbnail directory alone
+     */
+    public synchronized void clear() {
+        thumbnails.clear();
+        bytes = 0;
+        missing.clear();
+    }
+
+    /**
+     * @return The size of the thumbnails in memory : long
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private Path productImage(long productCode) {
+        return productDirectory.resolve(productCode + ".jpg");
+    }
+
+    private static long bytes(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight(); // an int a pixel
+    }
+
+    private static String key(Path image, int width, int height) {
+        return image.toAbsolutePath().normalize() + "@" + width + "x" + height;
+    }
+}
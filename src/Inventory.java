@@ -1,56 +1,520 @@
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
-public class Inventory {
+public class Inventory implements GarmentCatalog {
     /*------------------FIELDS------*/
-    private final Set<Garment> allGarments = new HashSet<>(); // HashSet that holds all Garments in the inventory
+    /* searches only ever read the current InventoryVersion, which never changes, so they never wait. Writers take
+       the lock, change the working state below, and then publish a frozen copy of it as the next version */
+    private volatile InventoryVersion current;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private int updateDepth = 0; // beginUpdate calls not yet ended; the changes are published when it gets back to 0
+    private boolean changed = false; // anything changed since the last version was published
+    // every garment in the inventory, stored column by column. A garment's position in the columns is its ordinal
+    private GarmentColumns columns = new GarmentColumns();
+    // inverted index: for each Filter, one bitmap of garment ordinals per value id (enum ordinal or brand id)
+    private final Map<Filter, List<BitSet>> filterIndex = new EnumMap<>(Filter.class);
+    // one bitmap per Filter, marking the garments that have that Filter at all
+    private final Map<Filter, BitSet> filterPresence = new EnumMap<>(Filter.class);
+    // working bitmap -> its frozen copy in the current version, for the bitmaps that haven't changed since
+    private final Map<BitSet, BitSet> publishedBitmaps = new IdentityHashMap<>();
+    private PriceIndex priceIndex = new PriceIndex(); // every garment's price, in price order
+    private final QueryPlanner planner = new QueryPlanner(); // value statistics, for choosing the order to check criteria in
+    private final CatalogAggregates aggregates = new CatalogAggregates(); // brands and price bounds, kept up to date
+    private final BitSet liveOrdinals = new BitSet(); // ordinals of garments that haven't been removed or replaced
+    private final Map<Long, Integer> ordinalByProductCode = new HashMap<>(); // where each live garment is
+    private ProductCodeIndex productCodes = ProductCodeIndex.EMPTY; // ordinalByProductCode, sorted as of some version
+    // product code -> its ordinal now, or ProductCodeIndex.ABSENT, for the codes changed since productCodes was sorted
+    private Map<Long, Integer> productCodeChanges = new HashMap<>();
+    private static final int MIN_PRODUCT_CODE_CHANGES = 256; // fewer changes than this are never worth a sort
+    private final StockLevels stock = new StockLevels(); // not versioned: shared by every version, and changed without the lock
+    private final BitSet touched = new BitSet(); // ordinals included or excluded since the last version was published
+    // version -> the ordinals touched in publishing it, for the last CHANGE_LOG_VERSIONS versions; guarded by itself
+    private final NavigableMap<Long, BitSet> changeLog = new TreeMap<>();
+    private static final int CHANGE_LOG_VERSIONS = 32;
+    // rows of removed and replaced garments there can always be before they're compacted away; beyond this they're
+    // compacted once there are more than half as many of them as there are garments
+    private static final int MIN_DEAD_ROWS = 1024;
+    private static final Filter[] FILTERS = Filter.values(); // values() hands out a new array every call
 
     /**
-     * Method to add Garment objects to the set
+     * Constructor for Inventory, starting out empty at version 0
+     */
+    public Inventory(){
+        current = new InventoryVersion(0, columns.freeze(), new EnumMap<>(Filter.class), new EnumMap<>(Filter.class),
+                priceIndex.freeze(), planner.freeze(), aggregates.freeze(), new BitSet(), productCodes, stock);
+    }
+
+    /**
+     * Starts a batch of changes, which searches won't see until the matching endUpdate, and then all at once.
+     * Other writers wait until the batch ends. Always call endUpdate in a finally block.
+     */
+    public void beginUpdate(){
+        writeLock.lock();
+        updateDepth++;
+    }
+
+    /**
+     * Ends a batch of changes started by beginUpdate, publishing them as a new version if it was the outermost one
+     */
+    public void endUpdate(){
+        try {
+            if(--updateDepth == 0 && changed) publish();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Freezes the working state into the next InventoryVersion and makes it current. Bitmaps that haven't changed
+     * since the last version are shared with it rather than copied again. Once removed and replaced garments have
+     * left enough dead rows behind, the live garments are compacted into new ones first.
+     */
+    private void publish(){
+        int deadRows = columns.size() - ordinalByProductCode.size();
+        boolean compacting = deadRows > Math.max(MIN_DEAD_ROWS, ordinalByProductCode.size() / 2);
+        if(compacting) compact();
+        Map<Filter, List<BitSet>> index = new EnumMap<>(Filter.class);
+        for(Map.Entry<Filter, List<BitSet>> entry : filterIndex.entrySet()){
+            List<BitSet> bitmaps = new ArrayList<>(entry.getValue().size());
+            for(BitSet bitmap : entry.getValue()) bitmaps.add(frozen(bitmap));
+            index.put(entry.getKey(), Collections.unmodifiableList(bitmaps));
+        }
+        Map<Filter, BitSet> presence = new EnumMap<>(Filter.class);
+        for(Map.Entry<Filter, BitSet> entry : filterPresence.entrySet()) presence.put(entry.getKey(), frozen(entry.getValue()));
+        current = new InventoryVersion(current.getVersion() + 1, columns.freeze(), index, presence, priceIndex.freeze(),
+                planner.freeze(), aggregates.freeze(), frozen(liveOrdinals), frozenProductCodes(), stock);
+        changed = false;
+        synchronized(changeLog){
+            if(compacting){
+                changeLog.clear(); // the ordinals from before this version mean nothing in it
+            } else {
+                changeLog.put(current.getVersion(), (BitSet) touched.clone());
+                if(changeLog.size() > CHANGE_LOG_VERSIONS) changeLog.pollFirstEntry();
+            }
+        }
+        touched.clear();
+    }
+
+    /**
+     * Copies the live garments into new columns, bitmaps and price index, in the same order, leaving the rows of
+     * removed and replaced garments behind, so that memory and the scans searches make don't keep growing with every
+     * change. The versions already published keep the old ones. Statistics, aggregates and stock don't depend on
+     * where a garment is, so they stay as they are.
+     */
+    private void compact(){
+        GarmentColumns old = columns;
+        int[] liveRows = liveOrdinals.stream().toArray();
+        columns = new GarmentColumns();
+        priceIndex = new PriceIndex();
+        filterIndex.clear();
+        filterPresence.clear();
+        publishedBitmaps.clear();
+        liveOrdinals.clear();
+        ordinalByProductCode.clear();
+        for(int row : liveRows){
+            int ordinal = columns.copy(old, row);
+            liveOrdinals.set(ordinal);
+            ordinalByProductCode.put(columns.getProductCode(ordinal), ordinal);
+            priceIndex.add(columns.getPrice(ordinal), ordinal);
+            index(ordinal, true);
+        }
+        sortProductCodes();
+    }
+
+    /**
+     * Gives the garments that were added, replaced or removed between two versions. A garment's row in the columns
+     * is never reused, so the ordinals can be looked up in either version, or any later one, until the columns are
+     * next compacted.
+     * @param from The older version : long
+     * @param to The newer version : long
+     * @return The ordinals of every garment row included or excluded by the versions after from up to to, or null if
+     * that goes back further than the last CHANGE_LOG_VERSIONS versions, or past a compaction : BitSet
+     */
+    public BitSet changedBetween(long from, long to){
+        BitSet changedOrdinals = new BitSet();
+        if(from >= to) return changedOrdinals;
+        synchronized(changeLog){
+            if(changeLog.isEmpty() || changeLog.firstKey() > from + 1 || changeLog.lastKey() < to) return null;
+            for(BitSet ordinals : changeLog.subMap(from, false, to, true).values()) changedOrdinals.or(ordinals);
+        }
+        return changedOrdinals;
+    }
+
+    /**
+     * Gives the next version its product code index. The sorted arrays are shared with the versions before it, along
+     * with the changes since they were sorted, until there are more than the square root of the number of garments;
+     * then they're sorted afresh. A single change therefore costs a copy of the few changes, not of every code.
+     * @return The index of the live garments' product codes : ProductCodeIndex
+     */
+    private ProductCodeIndex frozenProductCodes(){
+        int limit = Math.max(MIN_PRODUCT_CODE_CHANGES, (int) Math.sqrt(ordinalByProductCode.size()));
+        if(productCodeChanges.size() <= limit) return productCodes.withChanges(productCodeChanges);
+        sortProductCodes();
+        return productCodes;
+    }
+
+    /**
+     * Sorts the live garments' product codes afresh, with no changes since
+     */
+    private void sortProductCodes(){
+        long[] codes = new long[ordinalByProductCode.size()];
+        int[] ordinals = new int[codes.length];
+        int i = 0;
+        for(Map.Entry<Long, Integer> entry : ordinalByProductCode.entrySet()){
+            codes[i] = entry.getKey();
+            ordinals[i++] = entry.getValue();
+        }
+        productCodes = ProductCodeIndex.sorted(codes, ordinals);
+        productCodeChanges = new HashMap<>(); // clear() would keep the table a load grew it to, and copying walks it
+    }
+
+    /**
+     * @param bitmap One of the working bitmaps : BitSet
+     * @return A copy of it that will never change, made now unless there's one from before that's still up to date
+     */
+    private BitSet frozen(BitSet bitmap){
+        return publishedBitmaps.computeIfAbsent(bitmap, b -> (BitSet) b.clone());
+    }
+
+    /**
+     * Sets or clears a bit in one of the working bitmaps, so its frozen copy is out of date
+     * @param bitmap The working bitmap : BitSet
+     * @param ordinal The garment's ordinal : int
+     * @param present true to set the bit, false to clear it
+     */
+    private void mark(BitSet bitmap, int ordinal, boolean present){
+        bitmap.set(ordinal, present);
+        publishedBitmaps.remove(bitmap);
+    }
+
+    /**
+     * @return The current version of the inventory. Searching the same version more than once always gives the same
+     * answer, however the inventory changes in the meantime : InventoryVersion
+     */
+    public InventoryVersion snapshot(){
+        return current;
+    }
+
+    /**
+     * @return The current version number, which goes up by one each time a change is published : long
+     */
+    public long getVersion(){
+        return current.getVersion();
+    }
+
+    /**
+     * Method to add Garment objects to the inventory. The garment is split up into the columns and each of its filter
+     * values is indexed by the garment's ordinal; the Garment object itself is not kept. A garment with the same
+     * product code as one already in the inventory replaces it. Unless it's part of a beginUpdate batch, searches
+     * see it as soon as this returns.
      * @param Garment The garment with which we are adding
      */
     public void addGarment(Garment Garment){
-        this.allGarments.add(Garment);
+        beginUpdate();
+        try {
+            exclude(Garment.getProductCode()); // product codes are unique, so this is a replacement
+            include(columns.add(Garment));
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Adds a garment whose values are already ids, as read back from an InventorySnapshot, without building a
+     * Garment for it. Like addGarment, it replaces a garment with the same product code.
+     * @param productCode The garment's product code : long
+     * @param price The garment's price : double
+     * @param name The garment's name : String
+     * @param description The garment's description : String
+     * @param brandId The garment's BrandDictionary id, or GarmentColumns.ABSENT : int
+     * @param sizeMask bit mask of the garment's available sizes, or GarmentColumns.ABSENT : short
+     * @param valueOrdinals The garment's value for each enum valued Filter, indexed by Filter ordinal : byte[]
+     */
+    public void addGarment(long productCode, double price, String name, String description, int brandId,
+                           short sizeMask, byte[] valueOrdinals){
+        beginUpdate();
+        try {
+            exclude(productCode);
+            include(columns.add(productCode, price, name, description, brandId, sizeMask, valueOrdinals));
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Applies the difference between two versions of the inventory as one new version, so no search sees half of
+     * it. Only the garments that changed are touched; everything else keeps its place in the columns and indexes.
+     * @param removed The product codes of garments that are gone : Collection
+     * @param changed Garments that are new, or replace the garment with the same product code : Collection
+     */
+    public void applyDelta(Collection<Long> removed, Collection<Garment> changed){
+        beginUpdate();
+        try {
+            for(long productCode : removed) removeGarment(productCode);
+            for(Garment garment : changed) addGarment(garment);
+        } finally {
+            endUpdate();
+        }
     }
 
     /**
-     * @return A HashSet containing the Strings of all the available brands
+     * Makes a garment that was just added to the columns live, indexing it and counting it in the statistics
+     * @param ordinal The garment's ordinal : int
      */
+    private void include(int ordinal){
+        changed = true;
+        touched.set(ordinal);
+        mark(liveOrdinals, ordinal, true);
+        ordinalByProductCode.put(columns.getProductCode(ordinal), ordinal);
+        productCodeChanges.put(columns.getProductCode(ordinal), ordinal);
+        stock.track(columns.getProductCode(ordinal), columns.getSizeMask(ordinal)); // a replacement keeps its stock count
+        priceIndex.add(columns.getPrice(ordinal), ordinal);
+        planner.count(columns, ordinal, 1);
+        aggregates.add(columns, ordinal);
+        index(ordinal, true);
+    }
+
+    /**
+     * Saves every garment in the current version to a binary snapshot, which InventorySnapshot.load reads back far
+     * faster than the text file can be parsed
+     * @param path The file to write : Path
+     * @throws IOException if the file can't be written
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        current.writeSnapshot(path);
+    }
+
+    /**
+     * Method to remove a garment from the inventory. Its row in the columns and the price index stays where it is
+     * until they are next compacted, but it is taken out of the bitmaps, statistics and aggregates, so no search can
+     * find it again, and its stock is no longer counted.
+     * @param productCode The product code of the garment to remove : long
+     * @return true if there was a garment with that product code, false if not
+     */
+    public boolean removeGarment(long productCode){
+        beginUpdate();
+        try {
+            if(!exclude(productCode)) return false;
+            stock.forget(productCode);
+            return true;
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Takes a live garment out of the bitmaps, statistics and aggregates, leaving its stock alone so that a garment
+     * replacing it can carry on from it. Only called while holding the write lock.
+     * @param productCode The product code of the garment to take out : long
+     * @return true if there was a garment with that product code, false if not
+     */
+    private boolean exclude(long productCode){
+        Integer ordinal = ordinalByProductCode.remove(productCode);
+        if(ordinal == null) return false;
+        productCodeChanges.put(productCode, ProductCodeIndex.ABSENT);
+        changed = true;
+        touched.set(ordinal);
+        mark(liveOrdinals, ordinal, false);
+        planner.count(columns, ordinal, -1);
+        aggregates.remove(columns, ordinal);
+        index(ordinal, false);
+        return true;
+    }
+
+    /**
+     * Sets or clears a garment's bit in the bitmaps of each of its filter values
+     * @param ordinal The garment's ordinal : int
+     * @param present true to add the garment to the bitmaps, false to take it out
+     */
+    private void index(int ordinal, boolean present){
+        for(Filter filter : FILTERS){
+            if(filter == Filter.SIZE){
+                short sizeMask = columns.getSizeMask(ordinal);
+                if(sizeMask == GarmentColumns.ABSENT) continue;
+                mark(filterPresence.computeIfAbsent(filter, k -> new BitSet()), ordinal, present);
+                for(int s = 0; s < Size.values().length; s++){ // one bit in each available size's bitmap
+                    if((sizeMask & (1 << s)) != 0) mark(valueBitmap(filter, s), ordinal, present);
+                }
+            } else {
+                int valueId = columns.getValueId(filter, ordinal);
+                if(valueId == GarmentColumns.ABSENT) continue;
+                mark(filterPresence.computeIfAbsent(filter, k -> new BitSet()), ordinal, present);
+                mark(valueBitmap(filter, valueId), ordinal, present);
+            }
+        }
+    }
+
+    /**
+     * Gets the bitmap for a (Filter, value id) pair, creating it if this is the first garment with that value
+     * @param filter The Filter : Filter
+     * @param valueId The value's id in the columns : int
+     * @return The bitmap of garment ordinals with this value : BitSet
+     */
+    private BitSet valueBitmap(Filter filter, int valueId){
+        List<BitSet> bitmaps = filterIndex.computeIfAbsent(filter, k -> new ArrayList<>());
+        while(bitmaps.size() <= valueId) bitmaps.add(new BitSet());
+        return bitmaps.get(valueId);
+    }
+
+    /**
+     * @param productCode A garment's product code : long
+     * @param size The size : Size
+     * @return How many are left, StockLevels.UNLIMITED if the garment's stock isn't counted, or
+     * StockLevels.NOT_OFFERED if it's counted but doesn't come in that size : int
+     */
+    public int getStock(long productCode, Size size){
+        return stock.get(productCode, size);
+    }
+
+    /**
+     * Sets how many of a garment there are in a size, and starts counting its stock if it wasn't already. Waits for
+     * other writers, but publishes no new version: stock is shared by every version, so searches see it straight away.
+     * @param productCode A garment's product code : long
+     * @param size The size : Size
+     * @param count How many there are, or StockLevels.UNLIMITED to stop counting : int
+     * @throws IllegalArgumentException if the count is negative, or there's no such garment in that size
+     */
+    public void setStock(long productCode, Size size, int count){
+        beginUpdate();
+        try {
+            Integer ordinal = ordinalByProductCode.get(productCode);
+            stock.set(productCode, ordinal == null ? GarmentColumns.ABSENT : columns.getSizeMask(ordinal), size, count);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Takes stock for an order, atomically and without a lock, so that however many orders come in at once for
+     * the last few of a garment, no more are taken than there are. A garment whose stock isn't counted never runs out.
+     * @param productCode A garment's product code : long
+     * @param size The size : Size
+     * @param quantity How many to take : int
+     * @return true if they were taken, false if there aren't that many left : boolean
+     * @throws IllegalArgumentException if the quantity isn't positive, or the garment is counted and doesn't come in
+     * that size
+     */
+    public boolean reserve(long productCode, Size size, int quantity){
+        return stock.reserve(productCode, size, quantity);
+    }
+
+    /**
+     * Puts back stock taken by reserve, for an order that couldn't be placed or was cancelled
+     * @param productCode A garment's product code : long
+     * @param size The size : Size
+     * @param quantity How many to put back : int
+     * @throws IllegalArgumentException if the quantity isn't positive
+     */
+    public void release(long productCode, Size size, int quantity){
+        stock.release(productCode, size, quantity);
+    }
+
+    /**
+     * @return A read-only Set containing the Strings of all the available brands
+     */
+    @Override
     public Set<String> getAllBrands(){
-        Set<String> allBrands = new HashSet<>();
-        for(Garment tee: allGarments){ // for every garment we have
-            allBrands.add((String) tee.getGarmentSpecs().getFilter(Filter.BRAND)); // add the brand to the set
-        } // thankfully sets don't allow for repeat elements, so that's not a concern here
-        return allBrands;
+        return current.getAllBrands();
+    }
+
+    /**
+     * @param brand The brand's name : String
+     * @return The number of garments of that brand in the inventory : int
+     */
+    @Override
+    public int getBrandCount(String brand){
+        return current.getBrandCount(brand);
     }
 
     /**
      * Method to find the maximum price that the inventory has, so we can predefine the maximum searching price.
      * @return double : maximum price of a garment in the inventory
      */
+    @Override
     public double findMaxPrice() {
-        double maxPrice = 0;
-        for (Garment garment : allGarments) { // simple sequential search to find max price
-            if (garment.getPrice() > maxPrice) maxPrice = garment.getPrice();
-        }
-        return maxPrice;
+        return current.findMaxPrice();
+    }
+
+    /**
+     * @return double : minimum price of a garment in the inventory, or 0 if it is empty
+     */
+    @Override
+    public double findMinPrice() {
+        return current.findMinPrice();
     }
 
     /**
-     * Method used to find matching garments to the user's specified search criteria
+     * @param type The type of garment : GarmentType
+     * @return double : maximum price of a garment of that type, or 0 if there are none
+     */
+    @Override
+    public double findMaxPrice(GarmentType type) {
+        return current.findMaxPrice(type);
+    }
+
+    /**
+     * @param type The type of garment : GarmentType
+     * @return double : minimum price of a garment of that type, or 0 if there are none
+     */
+    @Override
+    public double findMinPrice(GarmentType type) {
+        return current.findMinPrice(type);
+    }
+
+    /**
+     * Method used to find matching garments to the user's specified search criteria, in the current version. It
+     * never waits for a writer, and never sees a change half made.
      * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
-     * @return matchingGarments : A List of Garment objects
+     * @return matchingGarments : The matching Garment objects, tagged with the version that found them : SearchResults
      */
-    public List<Garment> findMatch(GarmentSpecs dreamGarment){
-        List<Garment> matchingGarments = new ArrayList<>();
-        for(Garment Garment: allGarments){
-            if(!dreamGarment.matches(Garment.getGarmentSpecs())) continue;
-            if(Garment.getPrice()<dreamGarment.getMinPrice()||Garment.getPrice()>dreamGarment.getMaxPrice()) continue;
-            matchingGarments.add(Garment);
-        }
-        return matchingGarments;
+    @Override
+    public SearchResults findMatch(GarmentSpecs dreamGarment){
+        return current.findMatch(dreamGarment);
     }
 
+    /**
+     * Finds the garments matching the user's search criteria lazily, in the current version. The stream keeps
+     * reading the version it started with however long it's kept, so it never sees a change half made either.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return The matching garments : Stream
+     */
+    @Override
+    public Stream<Garment> search(GarmentSpecs dreamGarment){
+        return current.search(dreamGarment);
+    }
+
+    /**
+     * Finds one page of the garments matching the user's search criteria, sorted, in the current version. Pages
+     * asked for one after another can come from different versions; the cursor keeps them in step regardless.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @param sortKey The order to put the results in : SortKey
+     * @param limit The most garments to put on the page : int
+     * @param cursor Where the last page ended, or null for the first page : PageCursor
+     * @return The page of garments, tagged with the version that found them : SearchPage
+     */
+    @Override
+    public SearchPage findPage(GarmentSpecs dreamGarment, SortKey sortKey, int limit, PageCursor cursor){
+        return current.findPage(dreamGarment, sortKey, limit, cursor);
+    }
+
+    /**
+     * @param productCode A garment's product code : long
+     * @return The garment with that product code in the current version, or null if there isn't one : Garment
+     */
+    @Override
+    public Garment findGarment(long productCode){
+        return current.findGarment(productCode);
+    }
+
+    /**
+     * Runs a search the same way findMatch does and reports how it went
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @return The order the criteria were checked in, with estimated and actual candidate counts : String
+     */
+    public String explain(GarmentSpecs dreamGarment){
+        return current.explain(dreamGarment);
+    }
 }
@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+/**
+ * Compares the ways of starting up: parsing the text inventory, loading its binary snapshot, and mapping the
+ * snapshot. The time of a search that matches everything is reported for the loaded and the mapped catalogs.
+ * Run with the inventory file as the argument (./inventory.txt if there isn't one), e.g.
+ * java InventoryBenchmark inventory.txt 20
+ */
+public class InventoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        Path textFile = Path.of(args.length > 0 ? args[0] : "./inventory.txt");
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path snapshot = Files.createTempFile("inventory", ".snapshot");
+        try {
+            Inventory parsed = new Inventory();
+            InventoryParser.load(textFile, parsed);
+            parsed.writeSnapshot(snapshot);
+            GarmentSpecs everything = new GarmentSpecs(new HashMap<>(), 0, Double.MAX_VALUE);
+            System.out.printf("%s: %d bytes of text, %d bytes of snapshot%n", textFile, Files.size(textFile), Files.size(snapshot));
+            for (int round = 0; round < 2; round++) { // the first round is warm up, only the second is reported
+                long text = Long.MAX_VALUE, binary = Long.MAX_VALUE, mapped = Long.MAX_VALUE;
+                long loadedSearch = Long.MAX_VALUE, mappedSearch = Long.MAX_VALUE;
+                for (int i = 0; i < rounds; i++) {
+                    long start = System.nanoTime();
+                    InventoryParser.load(textFile, new Inventory());
+                    long middle = System.nanoTime();
+                    Inventory loaded = new Inventory();
+                    InventorySnapshot.load(snapshot, loaded);
+                    long end = System.nanoTime();
+                    MappedInventory mappedInventory = MappedInventory.open(snapshot);
+                    long opened = System.nanoTime();
+                    loaded.findMatch(everything);
+                    long searched = System.nanoTime();
+                    mappedInventory.findMatch(everything);
+                    long mappedSearched = System.nanoTime();
+                    text = Math.min(text, middle - start);
+                    binary = Math.min(binary, end - middle);
+                    mapped = Math.min(mapped, opened - end);
+                    loadedSearch = Math.min(loadedSearch, searched - opened);
+                    mappedSearch = Math.min(mappedSearch, mappedSearched - searched);
+                }
+                if (round == 1) {
+                    System.out.printf("text parse: %.2f ms, snapshot load: %.2f ms, snapshot map: %.2f ms (best of %d)%n",
+                            text / 1e6, binary / 1e6, mapped / 1e6, rounds);
+                    System.out.printf("search everything: %.2f ms loaded, %.2f ms mapped%n", loadedSearch / 1e6, mappedSearch / 1e6);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+public class InventoryFormatException extends IllegalArgumentException {
+    /*------------------FIELDS------*/
+    private static final long serialVersionUID = 1L;
+    private final String problem;
+    private final int lineNumber;
+    private final String detail;
+
+    /**
+     * Constructor for InventoryFormatException, thrown when a line of an inventory file can't be parsed
+     * @param problem What couldn't be parsed, e.g. "Price could not be parsed for garment" : String
+     * @param lineNumber The line of the file the problem is on, counting the header as line 1 : int
+     * @param detail More detail about the problem, such as the offending text : String
+     */
+    public InventoryFormatException(String problem, int lineNumber, String detail) {
+        super(problem + " on line " + lineNumber);
+        this.problem = problem;
+        this.lineNumber = lineNumber;
+        this.detail = detail;
+    }
+
+    /**
+     * @return The line of the file the problem is on : int
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return More detail about the problem : String
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Used when the line number was counted from the start of a chunk of the file, rather than the whole file
+     * @param linesBefore The number of lines in the file before the chunk : int
+     * @return The same problem, with its line number counted from the start of the file : InventoryFormatException
+     */
+    public InventoryFormatException withLinesBefore(int linesBefore) {
+        return new InventoryFormatException(problem, lineNumber + linesBefore, detail);
+    }
+}
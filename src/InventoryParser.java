@@ -0,0 +1,485 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+public class InventoryParser {
+    /*------------------FIELDS------*/
+    private static final int BUFFER_SIZE = 1 << 16; // bytes read from the file at a time
+    private static final long MIN_CHUNK_BYTES = 1 << 20; // smallest piece of the file worth giving its own thread
+    private static final int FIELDS = 10; // comma separated fields before the [sizes] and [description]
+    // lookup tables of each enum's constant names, compared against the raw bytes without building a String
+    private static final GarmentType[] GARMENT_TYPES = GarmentType.values();
+    private static final Material[] MATERIALS = Material.values();
+    private static final Neckline[] NECKLINES = Neckline.values();
+    private static final SleeveType[] SLEEVE_TYPES = SleeveType.values();
+    private static final PocketType[] POCKET_TYPES = PocketType.values();
+    private static final HoodieStyle[] HOODIE_STYLES = HoodieStyle.values();
+    private static final Size[] SIZES = Size.values();
+    private static final byte[][] GARMENT_TYPE_NAMES = names(GARMENT_TYPES);
+    private static final byte[][] MATERIAL_NAMES = names(MATERIALS);
+    private static final byte[][] NECKLINE_NAMES = names(NECKLINES);
+    private static final byte[][] SLEEVE_TYPE_NAMES = names(SLEEVE_TYPES);
+    private static final byte[][] POCKET_TYPE_NAMES = names(POCKET_TYPES);
+    private static final byte[][] HOODIE_STYLE_NAMES = names(HOODIE_STYLES);
+    private static final byte[][] SIZE_NAMES = names(SIZES);
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22}; // every one of these is an exact double
+    private final int[] fieldStarts = new int[FIELDS]; // reused for every line
+    private final int[] fieldEnds = new int[FIELDS];
+    private int lineNumber; // of the line being parsed, counted from the start of the range
+    private LineFilter lineFilter; // which lines to parse, or null for all of them
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Decides which lines of a file are worth parsing, before they are parsed, so a reload can skip the lines that
+     * haven't changed since last time
+     */
+    public interface LineFilter {
+        /**
+         * @param productCode The product code on the line : long
+         * @param lineHash A 64-bit hash of the line's bytes, without its line ending : long
+         * @return true to parse the line into a Garment, false to skip it : boolean
+         */
+        boolean accept(long productCode, long lineHash);
+    }
+
+    /**
+     * Reads an inventory file into an Inventory, one line at a time, so the whole file is never held in memory.
+     * The first line is a header and is skipped.
+     * @param path The inventory file : Path
+     * @param inventory The inventory to add each garment to : Inventory
+     * @throws IOException if the file can't be read
+     * @throws InventoryFormatException if a line can't be parsed
+     */
+    public static void load(Path path, Inventory inventory) throws IOException {
+        inventory.beginUpdate(); // searches see the whole file at once
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new InventoryParser().parse(channel, 0, channel.size(), true, inventory::addGarment);
+        } finally {
+            inventory.endUpdate();
+        }
+    }
+
+    /**
+     * Reads an inventory file into an Inventory using several threads. The file is split into chunks of whole lines,
+     * which are parsed on a ForkJoinPool, and the garments are added to the inventory chunk by chunk in file order,
+     * so the result is the same as load() gives. Only a few chunks ahead of the one being added are parsed at once,
+     * which keeps memory bounded however big the file is.
+     * @param path The inventory file : Path
+     * @param inventory The inventory to add each garment to : Inventory
+     * @param parallelism The number of threads to parse with : int
+     * @throws IOException if the file can't be read
+     * @throws InventoryFormatException if a line can't be parsed, numbered from the start of the file
+     */
+    public static void loadParallel(Path path, Inventory inventory, int parallelism) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        inventory.beginUpdate(); // searches see the whole file at once
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<Long> boundaries = chunkBoundaries(channel, Math.max(MIN_CHUNK_BYTES, channel.size() / (parallelism * 4L)));
+            int chunks = boundaries.size() - 1;
+            int window = parallelism * 2; // chunks parsed ahead of the one being added
+            List<ForkJoinTask<ParsedChunk>> tasks = new ArrayList<>(Collections.nCopies(chunks, null));
+            int submitted = 0;
+            int linesBefore = 0;
+            for (int i = 0; i < chunks; i++) {
+                while (submitted < chunks && submitted < i + window) {
+                    int chunk = submitted++;
+                    tasks.set(chunk, pool.submit(() -> parseChunk(channel, boundaries.get(chunk), boundaries.get(chunk + 1), chunk == 0)));
+                }
+                ParsedChunk parsed = tasks.get(i).join();
+                tasks.set(i, null); // let the garments be collected once they're in the inventory
+                parsed.garments.forEach(inventory::addGarment); // the sequential path adds everything before a bad line too
+                if (parsed.formatError != null) throw parsed.formatError.withLinesBefore(linesBefore);
+                if (parsed.ioError != null) throw parsed.ioError;
+                linesBefore += parsed.lines;
+            }
+        } finally {
+            inventory.endUpdate();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits a file into chunks of roughly the given size, each ending just after a newline
+     * @param channel The open inventory file : FileChannel
+     * @param chunkBytes The size to aim for : long
+     * @return The position of the start of each chunk, followed by the size of the file : List
+     * @throws IOException if the file can't be read
+     */
+    private static List<Long> chunkBoundaries(FileChannel channel, long chunkBytes) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long next = chunkBytes;
+        while (next < size) {
+            // look from the byte before, in case the newline is exactly where the chunk would end
+            long lineStart = size;
+            for (long position = next - 1; position < size && lineStart == size; position += buffer.position()) {
+                buffer.clear();
+                if (channel.read(buffer, position) <= 0) break;
+                for (int i = 0; i < buffer.position(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        lineStart = position + i + 1;
+                        break;
+                    }
+                }
+            }
+            if (lineStart >= size) break; // the rest of the file is one line
+            boundaries.add(lineStart);
+            next = lineStart + chunkBytes;
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    /**
+     * Parses one chunk of the file, holding on to any error so it can be reported in file order
+     * @param channel The open inventory file : FileChannel
+     * @param start The position of the chunk's first line : long
+     * @param end The position just after the chunk's last line : long
+     * @param first true for the chunk holding the header : boolean
+     * @return The chunk's garments, line count, and error if there was one : ParsedChunk
+     */
+    private static ParsedChunk parseChunk(FileChannel channel, long start, long end, boolean first) {
+        ParsedChunk chunk = new ParsedChunk();
+        try {
+            chunk.lines = new InventoryParser().parse(channel, start, end, first, chunk.garments::add);
+        } catch (InventoryFormatException e) {
+            chunk.formatError = e;
+        } catch (IOException e) {
+            chunk.ioError = e;
+        }
+        return chunk;
+    }
+
+    /**
+     * The result of parsing one chunk of the file in loadParallel
+     */
+    private static class ParsedChunk {
+        private final List<Garment> garments = new ArrayList<>(); // in file order, up to any bad line
+        private int lines; // lines in the chunk, for numbering the lines of the chunks after it
+        private InventoryFormatException formatError; // numbered from the start of the chunk
+        private IOException ioError;
+    }
+
+    /**
+     * Parses the lines within a range of bytes of an inventory file, in a single pass over the bytes
+     * @param channel The open inventory file : FileChannel
+     * @param start The position of the first byte of the first line : long
+     * @param end The position just after the last line : long
+     * @param skipFirstLine true if the first line is the header : boolean
+     * @param garments Where each parsed garment is sent, in file order : Consumer
+     * @return The number of lines in the range, including the header and blank lines : int
+     * @throws IOException if the file can't be read
+     * @throws InventoryFormatException if a line can't be parsed, numbered from the first line of the range
+     */
+    public int parse(FileChannel channel, long start, long end, boolean skipFirstLine, Consumer<Garment> garments)
+            throws IOException {
+        return parse(channel, start, end, skipFirstLine, null, garments);
+    }
+
+    /**
+     * Parses the lines within a range of bytes of an inventory file, like parse() above, but only the lines that a
+     * LineFilter accepts. The others are only read as far as their product code, and hashed.
+     * @param channel The open inventory file : FileChannel
+     * @param start The position of the first byte of the first line : long
+     * @param end The position just after the last line : long
+     * @param skipFirstLine true if the first line is the header : boolean
+     * @param lineFilter Which lines to parse, or null for all of them : LineFilter
+     * @param garments Where each parsed garment is sent, in file order : Consumer
+     * @return The number of lines in the range, including the header and blank lines : int
+     * @throws IOException if the file can't be read
+     * @throws InventoryFormatException if a line can't be parsed, numbered from the first line of the range
+     */
+    public int parse(FileChannel channel, long start, long end, boolean skipFirstLine, LineFilter lineFilter,
+                     Consumer<Garment> garments) throws IOException {
+        this.lineFilter = lineFilter;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = start;
+        lineNumber = 0;
+        int lineStart = 0; // position in the buffer of the start of the line being read
+        boolean finished = false;
+        while (!finished) {
+            // read as much of the range as fits after whatever is left of the previous block
+            buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + (end - position)));
+            int read = buffer.hasRemaining() ? channel.read(buffer, position) : 0;
+            if (read > 0) position += read;
+            finished = read <= 0 || position >= end;
+            byte[] bytes = buffer.array();
+            int filled = buffer.position();
+            for (int i = lineStart; i < filled; i++) {
+                if (bytes[i] != '\n') continue;
+                parseLine(bytes, lineStart, i, skipFirstLine, garments);
+                lineStart = i + 1;
+            }
+            if (finished && lineStart < filled) { // last line with no newline on the end
+                parseLine(bytes, lineStart, filled, skipFirstLine, garments);
+                lineStart = filled;
+            }
+            // move the unfinished line to the front of the buffer, growing it if the line fills the whole thing
+            int leftOver = filled - lineStart;
+            if (leftOver == buffer.capacity()) buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            System.arraycopy(bytes, lineStart, buffer.array(), 0, leftOver);
+            buffer.clear().position(leftOver);
+            lineStart = 0;
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Parses one line of the file into a Garment, unless it is the header or blank
+     * @param bytes The buffer holding the line : byte[]
+     * @param from Position of the first byte of the line : int
+     * @param to Position of the newline at the end of the line : int
+     * @param skipFirstLine true if the first line of the range is the header : boolean
+     * @param garments Where the garment is sent : Consumer
+     */
+    private void parseLine(byte[] bytes, int from, int to, boolean skipFirstLine, Consumer<Garment> garments) {
+        lineNumber++;
+        if (to > from && bytes[to - 1] == '\r') to--; // Windows line ending
+        if ((lineNumber == 1 && skipFirstLine) || to == from) return; // header or blank line
+        if (lineFilter != null && !lineFilter.accept(productCode(bytes, from, to), hash(bytes, from, to))) return;
+        // find the ten comma separated fields
+        int pos = from;
+        for (int field = 0; field < FIELDS; field++) {
+            fieldStarts[field] = pos;
+            while (pos < to && bytes[pos] != ',' && bytes[pos] != '[') pos++;
+            if (pos == to || bytes[pos] != ',') throw problem("Line could not be parsed for garment", bytes, from, to);
+            fieldEnds[field] = pos++;
+        }
+        while (pos < to && bytes[pos] != '[') pos++;
+        int sizesStart = pos + 1;
+        while (pos < to && bytes[pos] != ']') pos++;
+        int sizesEnd = pos;
+        while (pos < to && bytes[pos] != '[') pos++;
+        if (pos >= to) throw problem("Line could not be parsed for garment", bytes, from, to);
+        String description = withoutClosingBrackets(bytes, pos + 1, to);
+
+        GarmentType garmentType = (GarmentType) lookup(bytes, 0, GARMENT_TYPE_NAMES, GARMENT_TYPES, "type data could not be parsed for garment");
+        String name = string(bytes, 1);
+        long productCode = parseLong(bytes, fieldStarts[2], fieldEnds[2]);
+        double price = parseDouble(bytes, fieldStarts[3], fieldEnds[3]);
+        String brand = string(bytes, 4);
+        Material material = (Material) lookup(bytes, 5, MATERIAL_NAMES, MATERIALS, "Material data could not be parsed for garment");
+        Neckline neckline = (Neckline) lookup(bytes, 6, NECKLINE_NAMES, NECKLINES, "Neckline data could not be parsed for t-shirt");
+        SleeveType sleeveType = (SleeveType) lookup(bytes, 7, SLEEVE_TYPE_NAMES, SLEEVE_TYPES, "Sleeve type data could not be parsed for t-shirt");
+        PocketType pocketType = (PocketType) lookup(bytes, 8, POCKET_TYPE_NAMES, POCKET_TYPES, "Pocket type data could not be parsed for hoodie");
+        HoodieStyle hoodieStyle = (HoodieStyle) lookup(bytes, 9, HOODIE_STYLE_NAMES, HOODIE_STYLES, "Style data could not be parsed for hoodie");
+
+        Set<Size> sizes = EnumSet.noneOf(Size.class);
+        for (int sizeStart = sizesStart, i = sizesStart; i <= sizesEnd; i++) {
+            if (i < sizesEnd && bytes[i] != ',') continue;
+            if (i > sizeStart) { // skip empty entries, like after a trailing comma
+                int size = match(bytes, sizeStart, i, SIZE_NAMES);
+                if (size < 0) throw problem("Size data could not be parsed for t-shirt", bytes, sizeStart, i);
+                sizes.add(SIZES[size]);
+            }
+            sizeStart = i + 1;
+        }
+
+        Map<Filter,Object> filterMap = new LinkedHashMap<>(); // this is the map we pass to the GarmentSpecs object
+        filterMap.put(Filter.GARMENT_TYPE,garmentType);
+        filterMap.put(Filter.BRAND,brand);
+        filterMap.put(Filter.MATERIAL,material);
+        filterMap.put(Filter.SIZE,sizes);
+        if(!neckline.equals(Neckline.NA)) filterMap.put(Filter.NECKLINE,neckline); // only place if no NA
+        if(!sleeveType.equals(SleeveType.NA)) filterMap.put(Filter.SLEEVE_TYPE,sleeveType);
+        if(!hoodieStyle.equals(HoodieStyle.NA)) filterMap.put(Filter.HOODIE_STYLE,hoodieStyle);
+        if(!pocketType.equals(PocketType.NA)) filterMap.put(Filter.POCKET_TYPE,pocketType);
+        garments.accept(new Garment(name, productCode, price, description, new GarmentSpecs(filterMap)));
+    }
+
+    /**
+     * Finds and parses just the product code of a line, the third field
+     * @param bytes The buffer : byte[]
+     * @param from Position of the first byte of the line : int
+     * @param to Position of the end of the line : int
+     * @return The product code : long
+     */
+    private long productCode(byte[] bytes, int from, int to) {
+        int fieldStart = from;
+        for (int field = 0; field < 3; field++) {
+            int pos = fieldStart;
+            while (pos < to && bytes[pos] != ',' && bytes[pos] != '[') pos++;
+            if (pos == to || bytes[pos] != ',') throw problem("Line could not be parsed for garment", bytes, from, to);
+            if (field == 2) return parseLong(bytes, fieldStart, pos);
+            fieldStart = pos + 1;
+        }
+        throw new IllegalStateException(); // the loop always returns or throws
+    }
+
+    /**
+     * Hashes a line eight bytes at a time
+     * @param bytes The buffer : byte[]
+     * @param from Position of the first byte of the line : int
+     * @param to Position of the end of the line : int
+     * @return A 64-bit hash of the line's bytes : long
+     */
+    private static long hash(byte[] bytes, int from, int to) {
+        long hash = to - from;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) hash = (hash ^ (long) LONGS.get(bytes, i)) * 0x9e3779b97f4a7c15L;
+        for (; i < to; i++) hash = (hash ^ (bytes[i] & 0xff)) * 0x100000001b3L;
+        hash ^= hash >>> 32; // mix the high bits back down
+        return hash * 0x9e3779b97f4a7c15L;
+    }
+
+    /**
+     * Builds the lookup table for an enum: each constant's name as ASCII bytes
+     * @param values The enum's constants : Enum[]
+     * @return The names, in ordinal order : byte[][]
+     */
+    private static byte[][] names(Enum<?>[] values) {
+        byte[][] names = new byte[values.length][];
+        for (Enum<?> value : values) names[value.ordinal()] = value.name().getBytes(StandardCharsets.US_ASCII);
+        return names;
+    }
+
+    /**
+     * Finds the enum constant named by some bytes, ignoring case and treating spaces and hyphens as underscores,
+     * so "over sized" and "t-shirt" find OVER_SIZED and T_SHIRT
+     * @param bytes The buffer : byte[]
+     * @param from Position of the first byte of the name : int
+     * @param to Position just after the name : int
+     * @param names The enum's lookup table : byte[][]
+     * @return The constant's ordinal, or -1 if there is no such constant : int
+     */
+    private static int match(byte[] bytes, int from, int to, byte[][] names) {
+        for (int ordinal = 0; ordinal < names.length; ordinal++) {
+            byte[] name = names[ordinal];
+            if (name.length != to - from) continue;
+            int i = 0;
+            while (i < name.length) {
+                byte b = bytes[from + i];
+                if (b >= 'a' && b <= 'z') b -= 'a' - 'A';
+                else if (b == ' ' || b == '-') b = '_';
+                if (b != name[i]) break;
+                i++;
+            }
+            if (i == name.length) return ordinal;
+        }
+        return -1;
+    }
+
+    /**
+     * Looks up the enum constant in one of the fields
+     * @param bytes The buffer : byte[]
+     * @param field Which field : int
+     * @param names The enum's lookup table : byte[][]
+     * @param values The enum's constants : Enum[]
+     * @param problem What to report if there is no such constant : String
+     * @return The constant : Enum
+     */
+    private Enum<?> lookup(byte[] bytes, int field, byte[][] names, Enum<?>[] values, String problem) {
+        int ordinal = match(bytes, fieldStarts[field], fieldEnds[field], names);
+        if (ordinal < 0) throw problem(problem, bytes, fieldStarts[field], fieldEnds[field]);
+        return values[ordinal];
+    }
+
+    /**
+     * @param bytes The buffer : byte[]
+     * @param field Which field : int
+     * @return The field's text : String
+     */
+    private String string(byte[] bytes, int field) {
+        return new String(bytes, fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the description, leaving out any ']' characters the way the original loader did
+     * @param bytes The buffer : byte[]
+     * @param from Position just after the opening '[' : int
+     * @param to End of the line : int
+     * @return The description : String
+     */
+    private static String withoutClosingBrackets(byte[] bytes, int from, int to) {
+        int brackets = 0;
+        for (int i = from; i < to; i++) if (bytes[i] == ']') brackets++;
+        if (brackets == 0) return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        if (brackets == 1 && bytes[to - 1] == ']') return new String(bytes, from, to - 1 - from, StandardCharsets.UTF_8);
+        byte[] kept = new byte[to - from - brackets];
+        int length = 0;
+        for (int i = from; i < to; i++) if (bytes[i] != ']') kept[length++] = bytes[i];
+        return new String(kept, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a product code straight from the bytes
+     * @param bytes The buffer : byte[]
+     * @param from Position of the first digit : int
+     * @param to Position just after the last digit : int
+     * @return The product code : long
+     */
+    private long parseLong(byte[] bytes, int from, int to) {
+        if (from == to || to - from > 18) { // empty, or too long to be sure it won't overflow
+            try {
+                return Long.parseLong(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException n) {
+                throw problem("Product code could not be parsed for garment", bytes, from, to);
+            }
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') throw problem("Product code could not be parsed for garment", bytes, from, to);
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parses a price straight from the bytes. Plain decimals like "34.96" are worked out as whole number / power of
+     * ten, which rounds exactly the same as Double.parseDouble while both fit in a double exactly; anything else is
+     * left to Double.parseDouble.
+     * @param bytes The buffer : byte[]
+     * @param from Position of the first character : int
+     * @param to Position just after the last character : int
+     * @return The price : double
+     */
+    private double parseDouble(byte[] bytes, int from, int to) {
+        long digits = 0;
+        int digitCount = 0;
+        int decimals = -1; // digits seen after the point, -1 before it
+        boolean plain = to > from;
+        for (int i = from; i < to && plain; i++) {
+            byte b = bytes[i];
+            if (b == '.' && decimals < 0) decimals = 0;
+            else if (b >= '0' && b <= '9') {
+                digits = digits * 10 + (b - '0');
+                digitCount++;
+                if (decimals >= 0) decimals++;
+            } else plain = false;
+        }
+        if (plain && digitCount > 0 && digitCount <= 15 && decimals < POWERS_OF_TEN.length) {
+            return decimals <= 0 ? digits : digits / POWERS_OF_TEN[decimals];
+        }
+        try {
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException n) {
+            throw problem("Price could not be parsed for garment", bytes, from, to);
+        }
+    }
+
+    /**
+     * Builds the exception for something on the current line that couldn't be parsed
+     * @param problem What couldn't be parsed : String
+     * @param bytes The buffer : byte[]
+     * @param from Start of the offending text : int
+     * @param to End of the offending text : int
+     * @return The exception to throw : InventoryFormatException
+     */
+    private InventoryFormatException problem(String problem, byte[] bytes, int from, int to) {
+        String text = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        return new InventoryFormatException(problem, lineNumber, "Unexpected value \"" + text + "\"");
+    }
+}
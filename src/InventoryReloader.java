@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an Inventory up to date with the text file it was loaded from. Every line's product code and a hash of the
+ * line are remembered, so a reload only has to hash each line to find the ones that are new, changed or gone; just
+ * those are parsed and applied to the inventory. The file is read and compared without holding the inventory's lock,
+ * and the delta is published as one new version, so searches carry on while a reload runs and never see half of it.
+ */
+public class InventoryReloader {
+    /*------------------FIELDS------*/
+    private static final long SETTLE_MILLIS = 200; // quiet time after the last change to the file before reloading
+    private final Inventory inventory;
+    private final Path path;
+    private Map<Long, Long> lineHashes = new HashMap<>(); // product code -> hash of its line, as last loaded
+
+    /**
+     * Constructor for InventoryReloader. The inventory must currently hold exactly what the file says, e.g. because
+     * it has just been loaded from it; the file is hashed now to have something to compare the next version with.
+     * @param inventory The inventory to keep up to date : Inventory
+     * @param path The file it was loaded from : Path
+     * @throws IOException if the file can't be read
+     * @throws InventoryFormatException if the file can't be parsed
+     */
+    public InventoryReloader(Inventory inventory, Path path) throws IOException {
+        this.inventory = inventory;
+        this.path = path;
+        read((productCode, lineHash) -> {
+            lineHashes.put(productCode, lineHash);
+            return false; // already in the inventory
+        }, new ArrayList<>());
+    }
+
+    /**
+     * Reads the file again and applies whatever has changed since the last time to the inventory. If the file can't
+     * be parsed, the inventory is left as it was.
+     * @return How many garments were added, changed and removed : Delta
+     * @throws IOException if the file can't be read
+     * @throws InventoryFormatException if the file can't be parsed
+     */
+    public Delta reload() throws IOException {
+        Map<Long, Long> previous = lineHashes;
+        Map<Long, Long> current = new HashMap<>(Math.max(16, previous.size() * 4 / 3 + 1));
+        Delta delta = new Delta();
+        List<Garment> changed = new ArrayList<>();
+        read((productCode, lineHash) -> {
+            Long before = current.put(productCode, lineHash);
+            if (before != null) return true; // the same code twice: parse both, so the later line still wins
+            Long loaded = previous.get(productCode);
+            if (loaded == null) delta.added++;
+            else if (loaded != lineHash) delta.changed++;
+            return loaded == null || loaded != lineHash;
+        }, changed);
+        List<Long> removed = new ArrayList<>();
+        for (Long productCode : previous.keySet()) if (!current.containsKey(productCode)) removed.add(productCode);
+        delta.removed = removed.size();
+        inventory.applyDelta(removed, changed);
+        lineHashes = current;
+        return delta;
+    }
+
+    /**
+     * Reads the whole file, parsing the lines the filter accepts
+     * @param filter Which lines to parse : InventoryParser.LineFilter
+     * @param garments Where the parsed garments go : List
+     * @throws IOException if the file can't be read
+     */
+    private void read(InventoryParser.LineFilter filter, List<Garment> garments) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new InventoryParser().parse(channel, 0, channel.size(), true, filter, garments::add);
+        }
+    }
+
+    /**
+     * Starts a background thread that reloads the inventory whenever the file changes, printing what changed.
+     * A burst of changes (an editor saving in several writes, say) is reloaded once it has settled.
+     * @return The watching thread, which is a daemon, so it won't keep the app open : Thread
+     * @throws IOException if the file's directory can't be watched
+     */
+    public Thread watch() throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        WatchService watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(() -> {
+            try (watcher) {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean ours = false;
+                    for (WatchEvent<?> event : key.pollEvents()) ours |= path.getFileName().equals(event.context());
+                    key.reset();
+                    if (!ours) continue;
+                    while ((key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) { // wait for quiet
+                        key.pollEvents();
+                        key.reset();
+                    }
+                    try {
+                        System.out.println("Inventory reloaded: " + reload());
+                    } catch (IOException | InventoryFormatException e) { // keep the old inventory, try again next change
+                        System.out.println("Inventory could not be reloaded: " + e.getMessage());
+                    }
+                }
+            } catch (InterruptedException | IOException | ClosedWatchServiceException e) {
+                // stop watching
+            }
+        }, "inventory-reloader");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * How many garments a reload added, changed and removed
+     */
+    public static class Delta {
+        private int added;
+        private int changed;
+        private int removed;
+
+        /**
+         * @return The number of garments added : int
+         */
+        public int getAdded() {
+            return added;
+        }
+
+        /**
+         * @return The number of garments changed : int
+         */
+        public int getChanged() {
+            return changed;
+        }
+
+        /**
+         * @return The number of garments removed : int
+         */
+        public int getRemoved() {
+            return removed;
+        }
+
+        @Override
+        public String toString() {
+            return added + " added, " + changed + " changed, " + removed + " removed";
+        }
+    }
+}
@@ -0,0 +1,347 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The binary snapshot format for an Inventory. Everything is big-endian:
+ * <pre>
+ * header   magic, version, garment count, brand table bytes, string heap bytes (ints), lowest and highest price
+ *          (doubles), CRC32 of the rest (long)
+ * brands   brand count, then each brand name as a length and UTF-8 bytes
+ * records  one fixed-width record per garment: product code (long), price (double), brand number in the brand table
+ *          (int), size mask (short), then one value ordinal byte per Filter (unused for BRAND and SIZE)
+ * offsets  garment count * 2 + 1 ints: where each name and description starts in the string heap, and where it ends
+ * strings  the string heap: every name and description in UTF-8, in record order
+ * </pre>
+ * ABSENT (-1) is stored for anything a garment doesn't have, just as in GarmentColumns.
+ */
+public class InventorySnapshot {
+    /*------------------FIELDS------*/
+    public static final int MAGIC = 0x47474953; // "GGIS"
+    public static final int VERSION = 2; // bump whenever the layout, Filter or any of the enums change
+    public static final int HEADER_BYTES = 5 * Integer.BYTES + 2 * Double.BYTES + Long.BYTES;
+    private static final Filter[] FILTERS = Filter.values();
+    public static final int RECORD_BYTES = Long.BYTES + Double.BYTES + Integer.BYTES + Short.BYTES + FILTERS.length;
+    private static final String EXTENSION = ".snapshot";
+    private static final int[] VALUE_COUNTS = new int[FILTERS.length]; // constants in each enum valued Filter's enum
+    private static final int SIZE_BITS = (1 << Size.values().length) - 1;
+
+    static {
+        for (Filter filter : FILTERS) {
+            if (GarmentColumns.enumType(filter) != null) VALUE_COUNTS[filter.ordinal()] = GarmentColumns.enumType(filter).getEnumConstants().length;
+        }
+    }
+
+    private InventorySnapshot() {
+        // static methods only
+    }
+
+    /**
+     * @param textFile An inventory text file, e.g. inventory.txt : Path
+     * @return Where the snapshot of that file is kept, e.g. inventory.snapshot : Path
+     */
+    public static Path pathFor(Path textFile) {
+        String name = textFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return textFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+    }
+
+    /**
+     * @param snapshot A snapshot file : Path
+     * @param textFile The text file it was taken from : Path
+     * @return true if the snapshot exists and was written after the text file was last changed : boolean
+     */
+    public static boolean isNewer(Path snapshot, Path textFile) {
+        try {
+            return Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(textFile)) > 0;
+        } catch (IOException e) {
+            return false; // no snapshot (or no text file to compare with)
+        }
+    }
+
+    /**
+     * Writes the live garments in some columns to a snapshot. The snapshot is written to a temporary file and then
+     * moved into place, so a half-written snapshot is never left behind to be loaded.
+     * @param columns The columns the garments are in : GarmentColumns
+     * @param liveOrdinals The ordinals of the garments to write : BitSet
+     * @param path The file to write : Path
+     * @throws IOException if the file can't be written
+     */
+    public static void write(GarmentColumns columns, BitSet liveOrdinals, Path path) throws IOException {
+        // number the brands that are used, in the order they're first seen
+        Map<Integer, Integer> brandNumbers = new LinkedHashMap<>();
+        for (int i = liveOrdinals.nextSetBit(0); i >= 0; i = liveOrdinals.nextSetBit(i + 1)) {
+            int brandId = columns.getValueId(Filter.BRAND, i);
+            if (brandId != GarmentColumns.ABSENT) brandNumbers.putIfAbsent(brandId, brandNumbers.size());
+        }
+        ByteArrayOutputStream brandTable = new ByteArrayOutputStream();
+        DataOutputStream brands = new DataOutputStream(brandTable);
+        brands.writeInt(brandNumbers.size());
+        for (int brandId : brandNumbers.keySet()) writeString(brands, BrandDictionary.nameOf(brandId));
+
+        int garmentCount = liveOrdinals.cardinality();
+        long heapBytes = 0;
+        double minPrice = garmentCount == 0 ? 0 : Double.MAX_VALUE, maxPrice = garmentCount == 0 ? 0 : -Double.MAX_VALUE;
+        for (int i = liveOrdinals.nextSetBit(0); i >= 0; i = liveOrdinals.nextSetBit(i + 1)) {
+            heapBytes += utf8Length(columns.getName(i)) + utf8Length(columns.getDescription(i));
+            minPrice = Math.min(minPrice, columns.getPrice(i));
+            maxPrice = Math.max(maxPrice, columns.getPrice(i));
+        }
+        if (heapBytes > Integer.MAX_VALUE) throw new IOException("Too much text in the inventory for one snapshot");
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES); // the header goes in last, once the checksum is known
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            brandTable.writeTo(out);
+            for (int i = liveOrdinals.nextSetBit(0); i >= 0; i = liveOrdinals.nextSetBit(i + 1)) {
+                out.writeLong(columns.getProductCode(i));
+                out.writeDouble(columns.getPrice(i));
+                int brandId = columns.getValueId(Filter.BRAND, i);
+                out.writeInt(brandId == GarmentColumns.ABSENT ? GarmentColumns.ABSENT : brandNumbers.get(brandId));
+                out.writeShort(columns.getSizeMask(i));
+                for (Filter filter : FILTERS) {
+                    boolean enumValued = filter != Filter.BRAND && filter != Filter.SIZE;
+                    out.writeByte(enumValued ? columns.getValueId(filter, i) : GarmentColumns.ABSENT);
+                }
+            }
+            int offset = 0;
+            out.writeInt(offset);
+            for (int i = liveOrdinals.nextSetBit(0); i >= 0; i = liveOrdinals.nextSetBit(i + 1)) {
+                out.writeInt(offset += utf8Length(columns.getName(i)));
+                out.writeInt(offset += utf8Length(columns.getDescription(i)));
+            }
+            for (int i = liveOrdinals.nextSetBit(0); i >= 0; i = liveOrdinals.nextSetBit(i + 1)) {
+                out.write(columns.getName(i).getBytes(StandardCharsets.UTF_8));
+                out.write(columns.getDescription(i).getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(garmentCount).putInt(brandTable.size()).putInt((int) heapBytes);
+            header.putDouble(minPrice).putDouble(maxPrice).putLong(crc.getValue()).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot into an Inventory. Values are already ids, so there's no text to parse: each record goes
+     * straight into the columns and indexes. The checksum is checked before anything is added.
+     * @param path The snapshot file : Path
+     * @param inventory The inventory to add each garment to : Inventory
+     * @throws IOException if the file can't be read, or isn't a snapshot this version can read
+     */
+    public static void load(Path path, Inventory inventory) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException(path + " is too big to be a snapshot");
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full
+            }
+            buffer.flip();
+        }
+        Header header = Header.read(buffer, buffer.limit(), path);
+        header.verify(path, buffer.slice(HEADER_BYTES, buffer.limit() - HEADER_BYTES));
+        int[] brandIds = readBrandTable(buffer.slice(HEADER_BYTES, header.brandTableBytes), path);
+        int brandCount = brandIds.length;
+        int offsets = (int) header.offsetsStart(); // all within the buffer, since its length matched the header
+        int heap = (int) header.heapStart();
+        inventory.beginUpdate(); // searches see the whole snapshot at once
+        try {
+            byte[] valueOrdinals = new byte[FILTERS.length]; // reused for every record
+            for (int g = 0; g < header.garmentCount; g++) {
+                int record = (int) header.recordsStart() + g * RECORD_BYTES;
+                checkRecord(buffer, record, buffer, offsets + 2 * g * Integer.BYTES, brandCount, header.heapBytes, path);
+                int brand = buffer.getInt(record + Long.BYTES + Double.BYTES);
+                short sizeMask = buffer.getShort(record + Long.BYTES + Double.BYTES + Integer.BYTES);
+                buffer.get(record + Long.BYTES + Double.BYTES + Integer.BYTES + Short.BYTES, valueOrdinals);
+                int nameStart = buffer.getInt(offsets + 2 * g * Integer.BYTES);
+                int descriptionStart = buffer.getInt(offsets + (2 * g + 1) * Integer.BYTES);
+                int descriptionEnd = buffer.getInt(offsets + (2 * g + 2) * Integer.BYTES);
+                inventory.addGarment(buffer.getLong(record), buffer.getDouble(record + Long.BYTES),
+                        new String(buffer.array(), heap + nameStart, descriptionStart - nameStart, StandardCharsets.UTF_8),
+                        new String(buffer.array(), heap + descriptionStart, descriptionEnd - descriptionStart, StandardCharsets.UTF_8),
+                        brand == GarmentColumns.ABSENT ? GarmentColumns.ABSENT : brandIds[brand], sizeMask, valueOrdinals);
+            }
+        } finally {
+            inventory.endUpdate();
+        }
+    }
+
+    /**
+     * Checks that a garment's record and string offsets hold values this version could have written, so nothing read
+     * from them later can be out of range
+     * @param records The records : ByteBuffer
+     * @param record Where the garment's record starts in them : int
+     * @param offsets The string offsets : ByteBuffer
+     * @param offset Where the garment's name offset is in them : int
+     * @param brandCount The number of brands in the brand table : int
+     * @param heapBytes The length of the string heap : int
+     * @param path The snapshot file, for error messages : Path
+     * @throws IOException if a value is out of range
+     */
+    static void checkRecord(ByteBuffer records, int record, ByteBuffer offsets, int offset, int brandCount,
+                            int heapBytes, Path path) throws IOException {
+        int brand = records.getInt(record + Long.BYTES + Double.BYTES);
+        if (brand < GarmentColumns.ABSENT || brand >= brandCount) throw corrupt(path);
+        short sizeMask = records.getShort(record + Long.BYTES + Double.BYTES + Integer.BYTES);
+        if (sizeMask != GarmentColumns.ABSENT && (sizeMask & ~SIZE_BITS) != 0) throw corrupt(path);
+        int values = record + Long.BYTES + Double.BYTES + Integer.BYTES + Short.BYTES;
+        for (Filter filter : FILTERS) {
+            int value = records.get(values + filter.ordinal());
+            if (value != GarmentColumns.ABSENT && (value < 0 || value >= VALUE_COUNTS[filter.ordinal()])) throw corrupt(path);
+        }
+        int nameStart = offsets.getInt(offset);
+        int descriptionStart = offsets.getInt(offset + Integer.BYTES);
+        int descriptionEnd = offsets.getInt(offset + 2 * Integer.BYTES);
+        if (nameStart < 0 || nameStart > descriptionStart || descriptionStart > descriptionEnd
+                || descriptionEnd > heapBytes) throw corrupt(path);
+    }
+
+    /**
+     * Reads a snapshot's brand table, interning every brand in the BrandDictionary
+     * @param table The brand table : ByteBuffer
+     * @param path The snapshot file, for error messages : Path
+     * @return The BrandDictionary id of each brand number in the table : int[]
+     * @throws IOException if the table doesn't make sense
+     */
+    static int[] readBrandTable(ByteBuffer table, Path path) throws IOException {
+        int brandCount = table.getInt(0);
+        if (brandCount < 0 || brandCount > table.limit() / Integer.BYTES) throw corrupt(path);
+        int[] brandIds = new int[brandCount]; // brand table number -> BrandDictionary id
+        int position = Integer.BYTES;
+        for (int b = 0; b < brandCount; b++) {
+            int length = table.getInt(position);
+            if (length < 0 || length > table.limit() - position - Integer.BYTES) throw corrupt(path);
+            byte[] name = new byte[length];
+            table.get(position + Integer.BYTES, name);
+            brandIds[b] = BrandDictionary.intern(new String(name, StandardCharsets.UTF_8));
+            position += Integer.BYTES + length;
+        }
+        if (position != table.limit()) throw corrupt(path);
+        return brandIds;
+    }
+
+    /**
+     * @param path The snapshot file : Path
+     * @return The exception to throw for a snapshot whose contents don't make sense : IOException
+     */
+    static IOException corrupt(Path path) {
+        return new IOException(path + " is corrupt");
+    }
+
+    /**
+     * @param out Where to write : DataOutput
+     * @param string The string, written as its UTF-8 length followed by its UTF-8 bytes : String
+     * @throws IOException if it can't be written
+     */
+    private static void writeString(DataOutput out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @param string Any string : String
+     * @return The number of bytes it takes up in UTF-8, without encoding it : int
+     */
+    private static int utf8Length(String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) length += 1;
+            else if (c < 0x800) length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) length += 1; // a lone surrogate is encoded as '?'
+            else length += 3;
+        }
+        return length;
+    }
+
+    /**
+     * A snapshot's header, checked against the file it came from
+     */
+    static class Header {
+        final int garmentCount;
+        final int brandTableBytes;
+        final int heapBytes;
+        final double minPrice;
+        final double maxPrice;
+        final long checksum; // CRC32 of everything after the header
+
+        private Header(ByteBuffer buffer) {
+            garmentCount = buffer.getInt(2 * Integer.BYTES);
+            brandTableBytes = buffer.getInt(3 * Integer.BYTES);
+            heapBytes = buffer.getInt(4 * Integer.BYTES);
+            minPrice = buffer.getDouble(5 * Integer.BYTES);
+            maxPrice = buffer.getDouble(5 * Integer.BYTES + Double.BYTES);
+            checksum = buffer.getLong(5 * Integer.BYTES + 2 * Double.BYTES);
+        }
+
+        /**
+         * Reads the header and checks that it's one this version can read, and that the file is the right length for
+         * the counts in it. The checksum is left to verify().
+         * @param buffer The start of the snapshot, at least HEADER_BYTES long : ByteBuffer
+         * @param fileLength The length of the whole snapshot : long
+         * @param path The snapshot file, for error messages : Path
+         * @return The header : Header
+         * @throws IOException if the file isn't a snapshot this version can read
+         */
+        static Header read(ByteBuffer buffer, long fileLength, Path path) throws IOException {
+            if (fileLength < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException(path + " is not an inventory snapshot");
+            int version = buffer.getInt(Integer.BYTES);
+            if (version != VERSION) throw new IOException(path + " is snapshot version " + version + ", not " + VERSION);
+            Header header = new Header(buffer);
+            if (header.garmentCount < 0 || header.brandTableBytes < Integer.BYTES || header.heapBytes < 0
+                    || header.length() != fileLength) throw corrupt(path);
+            return header;
+        }
+
+        /**
+         * @param path The snapshot file, for error messages : Path
+         * @param body Everything in the snapshot after the header, in order, in as many parts as it's in : ByteBuffer[]
+         * @throws IOException if the body doesn't match the checksum in the header
+         */
+        void verify(Path path, ByteBuffer... body) throws IOException {
+            CRC32 crc = new CRC32();
+            for (ByteBuffer part : body) crc.update(part.duplicate());
+            if (crc.getValue() != checksum) throw new IOException(path + " failed its checksum");
+        }
+
+        long recordsStart() {
+            return HEADER_BYTES + (long) brandTableBytes;
+        }
+
+        long offsetsStart() {
+            return recordsStart() + (long) garmentCount * RECORD_BYTES;
+        }
+
+        long heapStart() {
+            return offsetsStart() + (2L * garmentCount + 1) * Integer.BYTES;
+        }
+
+        /**
+         * @return The length the whole snapshot should be : long
+         */
+        long length() {
+            return heapStart() + (long) heapBytes;
+        }
+    }
+}
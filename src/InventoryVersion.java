@@ -0,0 +1,471 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * One published version of an Inventory. Nothing in it changes once it has been published: an Inventory's writers
+ * build the next version alongside it and swap it in whole. So any number of searches can read a version at once
+ * without locks, and every search sees the catalog exactly as it was at one moment.
+ */
+public class InventoryVersion implements GarmentCatalog {
+    /*------------------FIELDS------*/
+    private final long version; // counts up from 0 (empty) each time the inventory publishes a change
+    // every garment, stored column by column. Garments added after this version sit past the end this view can see
+    private final GarmentColumns columns;
+    // inverted index: for each Filter, one bitmap of garment ordinals per value id (enum ordinal or brand id)
+    private final Map<Filter, List<BitSet>> filterIndex;
+    // one bitmap per Filter, marking the garments that have that Filter at all
+    private final Map<Filter, BitSet> filterPresence;
+    private final PriceIndex priceIndex; // every garment's price, in price order
+    private final QueryPlanner planner; // value statistics, for choosing the order to check criteria in
+    private final CatalogAggregates aggregates; // brands and price bounds
+    private final BitSet liveOrdinals; // ordinals of garments that hadn't been removed or replaced
+    private final ProductCodeIndex productCodes; // where each of them is, by product code
+    private final StockLevels stock; // the one exception: shared by every version, and always up to the minute
+    /* a price range holding fewer than 1 in this many garments is cheaper to check garment by garment than to build
+       whole-inventory bitmaps for, since each bitmap word covers 64 garments at once */
+    private static final int PRICE_FIRST_RATIO = 64;
+    /* a page sorted by price is found by walking the price index, checking garments one at a time, if that's
+       expected to check fewer than 1 in this many garments; otherwise by building bitmaps, as findMatch does */
+    private static final int PAGE_WALK_RATIO = 16;
+    /* findMatch builds at least this many matches in parallel; fewer are built faster than the workers could be
+       handed them */
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final Filter[] FILTERS = Filter.values(); // values() hands out a new array every call
+
+    /**
+     * Constructor for InventoryVersion, used by Inventory when it publishes. Everything passed in must already be a
+     * frozen copy that nothing will change again.
+     * @param version The version number : long
+     * @param columns The columns : GarmentColumns
+     * @param filterIndex The value bitmaps of each Filter : Map
+     * @param filterPresence The presence bitmap of each Filter : Map
+     * @param priceIndex The sorted prices : PriceIndex
+     * @param planner The value statistics : QueryPlanner
+     * @param aggregates The brands and price bounds : CatalogAggregates
+     * @param liveOrdinals The garments in this version : BitSet
+     * @param productCodes The ordinal of each of them, by product code : ProductCodeIndex
+     * @param stock The inventory's stock levels, which aren't frozen : StockLevels
+     */
+    public InventoryVersion(long version, GarmentColumns columns, Map<Filter, List<BitSet>> filterIndex,
+                            Map<Filter, BitSet> filterPresence, PriceIndex priceIndex, QueryPlanner planner,
+                            CatalogAggregates aggregates, BitSet liveOrdinals, ProductCodeIndex productCodes,
+                            StockLevels stock) {
+        this.version = version;
+        this.columns = columns;
+        this.filterIndex = filterIndex;
+        this.filterPresence = filterPresence;
+        this.priceIndex = priceIndex;
+        this.planner = planner;
+        this.aggregates = aggregates;
+        this.liveOrdinals = liveOrdinals;
+        this.productCodes = productCodes;
+        this.stock = stock;
+    }
+
+    /**
+     * @return The version number, which goes up by one each time the inventory publishes a change : long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The number of garments in this version : int
+     */
+    public int size() {
+        return liveOrdinals.cardinality();
+    }
+
+    /**
+     * Saves every garment in this version to a binary snapshot, which InventorySnapshot.load reads back far faster
+     * than the text file can be parsed
+     * @param path The file to write : Path
+     * @throws IOException if the file can't be written
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        InventorySnapshot.write(columns, liveOrdinals, path);
+    }
+
+    /**
+     * @return A read-only Set containing the Strings of all the available brands in this version
+     */
+    @Override
+    public Set<String> getAllBrands(){
+        return aggregates.getAllBrands();
+    }
+
+    /**
+     * @param brand The brand's name : String
+     * @return The number of garments of that brand in the inventory : int
+     */
+    @Override
+    public int getBrandCount(String brand){
+        return aggregates.getBrandCount(brand);
+    }
+
+    /**
+     * Method to find the maximum price that the inventory has, so we can predefine the maximum searching price.
+     * @return double : maximum price of a garment in the inventory
+     */
+    @Override
+    public double findMaxPrice() {
+        return aggregates.getMaxPrice();
+    }
+
+    /**
+     * @return double : minimum price of a garment in the inventory, or 0 if it is empty
+     */
+    @Override
+    public double findMinPrice() {
+        return aggregates.getMinPrice();
+    }
+
+    /**
+     * @param type The type of garment : GarmentType
+     * @return double : maximum price of a garment of that type, or 0 if there are none
+     */
+    @Override
+    public double findMaxPrice(GarmentType type) {
+        return aggregates.getMaxPrice(type);
+    }
+
+    /**
+     * @param type The type of garment : GarmentType
+     * @return double : minimum price of a garment of that type, or 0 if there are none
+     */
+    @Override
+    public double findMinPrice(GarmentType type) {
+        return aggregates.getMinPrice(type);
+    }
+
+    /**
+     * Method used to find matching garments to the user's specified search criteria. The QueryPlanner puts the
+     * criteria (including the price range) in order, most selective first. If that's a narrow price range, just the
+     * garments in it are checked one at a time, straight from the columns. Otherwise each criterion's bitmap (the OR
+     * of the bitmaps of its values) is AND-ed in turn, with the price range taken from the price index.
+     * Garment objects are only built for the garments that match; building them is most of the work of a broad
+     * search, so when there are at least PARALLEL_THRESHOLD of them they're built on the common ForkJoinPool, still
+     * in ordinal order. If the specs only want garments in stock, those
+     * with none left in any of the sizes searched for (or any size, if none are) are dropped last, using the stock
+     * levels as they are now rather than as they were when this version was published.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return matchingGarments : The matching Garment objects, tagged with this version : SearchResults
+     */
+    @Override
+    public SearchResults findMatch(GarmentSpecs dreamGarment){
+        BitSet matches = matchingOrdinals(dreamGarment);
+        int matchCount = matches.cardinality();
+        if(matchCount >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1){
+            // each worker builds an equal share of the matches straight into its own stretch of one array
+            Garment[] built = StreamSupport.stream(
+                    new MatchSpliterator(matches.toLongArray(), matchCount, columns::materialise), true)
+                    .toArray(Garment[]::new);
+            return new SearchResults(Arrays.asList(built), version);
+        }
+        List<Garment> matchingGarments = new ArrayList<>(matchCount);
+        for(int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)){
+            matchingGarments.add(columns.materialise(i));
+        }
+        return new SearchResults(matchingGarments, version);
+    }
+
+    /**
+     * Finds the garments matching the user's search criteria lazily. The matches are found with bitmaps, as findMatch
+     * does, which is word-at-a-time work that builds nothing; the Garment objects are only built as the stream asks
+     * for them. Since the bitmap says exactly how many matches there are, count() is answered without building any,
+     * and a parallel stream splits the bitmap into halves with equal numbers of matches rather than equal ranges of
+     * ordinals.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return The matching garments, in ordinal order : Stream
+     */
+    @Override
+    public Stream<Garment> search(GarmentSpecs dreamGarment){
+        BitSet matches = matchingOrdinals(dreamGarment);
+        return StreamSupport.stream(
+                new MatchSpliterator(matches.toLongArray(), matches.cardinality(), columns::materialise), false);
+    }
+
+    /**
+     * Finds one page of the garments matching the user's search criteria, in sorted order. Only the garments on the
+     * page are built, and no list of every match is made. A page sorted by price, when the criteria are expected to
+     * match often enough, walks the price index from where the last page ended and stops as soon as the page is full,
+     * so "the cheapest 20 hoodies" checks a few dozen garments however big the inventory is. Otherwise the matches
+     * are found with bitmaps, as findMatch does, and the first of them picked out with a BoundedHeap.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @param sortKey The order to put the results in : SortKey
+     * @param limit The most garments to put on the page : int
+     * @param cursor Where the last page ended, or null for the first page : PageCursor
+     * @return The page of garments, tagged with this version : SearchPage
+     */
+    @Override
+    public SearchPage findPage(GarmentSpecs dreamGarment, SortKey sortKey, int limit, PageCursor cursor){
+        if(limit < 1) throw new IllegalArgumentException("A page must hold at least 1 garment");
+        QueryPlan plan = planner.plan(dreamGarment);
+        int[] page; // one more than the limit, if there are that many, to tell whether there's a next page
+        if((sortKey == SortKey.PRICE_ASCENDING || sortKey == SortKey.PRICE_DESCENDING)
+                && expectedWalk(plan, limit + 1) < columns.size() / PAGE_WALK_RATIO){
+            page = walkPrices(dreamGarment, plan, sortKey == SortKey.PRICE_ASCENDING, limit + 1, cursor);
+        } else {
+            BitSet matches = evaluate(plan, dreamGarment);
+            if(dreamGarment.isInStockOnly()) dropOutOfStock(matches, dreamGarment);
+            BoundedHeap first = new BoundedHeap(limit + 1, (a, b) -> sortKey.compare(
+                    columns.getPrice(a), columns.getName(a), columns.getProductCode(a),
+                    columns.getPrice(b), columns.getName(b), columns.getProductCode(b)));
+            for(int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)){
+                if(cursor == null || cursor.isBefore(columns.getPrice(i), columns.getName(i), columns.getProductCode(i))){
+                    first.offer(i);
+                }
+            }
+            page = first.drainSorted();
+        }
+        List<Garment> garments = new ArrayList<>(Math.min(limit, page.length));
+        for(int i = 0; i < Math.min(limit, page.length); i++) garments.add(columns.materialise(page[i]));
+        PageCursor next = page.length > limit ? new PageCursor(sortKey, garments.get(limit - 1)) : null;
+        return new SearchPage(garments, version, next);
+    }
+
+    /**
+     * Estimates how many garments walkPrices would check to find enough matches, taking the criteria other than
+     * price to be independent of each other and of price
+     * @param plan The query plan : QueryPlan
+     * @param wanted The number of matches wanted : int
+     * @return The estimated number of garments checked, or Double.MAX_VALUE if it looks like nothing matches : double
+     */
+    private double expectedWalk(QueryPlan plan, int wanted){
+        double matchFraction = 1;
+        for(int step = 0; step < plan.size(); step++){
+            if(plan.getStep(step) != null) matchFraction *= (double) plan.getEstimate(step) / Math.max(1, columns.size());
+        }
+        return matchFraction == 0 ? Double.MAX_VALUE : wanted / matchFraction;
+    }
+
+    /**
+     * Walks the price index in price order from where the cursor left off, checking one garment at a time, until
+     * enough matches are found. Garments with the same price are put in product code order.
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @param plan The order to check the criteria in : QueryPlan
+     * @param ascending true for cheapest first, false for dearest first : boolean
+     * @param wanted The number of matches wanted : int
+     * @param cursor Where the last page ended, or null : PageCursor
+     * @return The ordinals of the matches, in order : int[]
+     */
+    private int[] walkPrices(GarmentSpecs dreamGarment, QueryPlan plan, boolean ascending, int wanted, PageCursor cursor){
+        double minPrice = dreamGarment.getMinPrice(), maxPrice = dreamGarment.getMaxPrice();
+        if(cursor != null && ascending) minPrice = Math.max(minPrice, cursor.getPrice());
+        if(cursor != null && !ascending) maxPrice = Math.min(maxPrice, cursor.getPrice());
+        int first = priceIndex.firstAtLeast(minPrice), end = priceIndex.firstAbove(maxPrice);
+        long sizes = dreamGarment.hasFilter(Filter.SIZE) ? dreamGarment.getValueMask(Filter.SIZE) : -1L;
+        int[] found = new int[wanted];
+        int count = 0;
+        List<Integer> samePrice = new ArrayList<>(); // matches at the price being walked through
+        int position = ascending ? first : end - 1;
+        while(count < wanted && (ascending ? position < end : position >= first)){
+            double price = priceIndex.priceAt(position);
+            samePrice.clear();
+            for(; ascending ? position < end : position >= first; position += ascending ? 1 : -1){
+                if(priceIndex.priceAt(position) != price) break;
+                int ordinal = priceIndex.ordinalAt(position);
+                if(!liveOrdinals.get(ordinal)) continue; // removed or replaced since it was indexed
+                if(cursor != null && !cursor.isBefore(price, null, columns.getProductCode(ordinal))) continue;
+                if(stepsPassed(ordinal, dreamGarment, plan) < plan.size()) continue;
+                if(dreamGarment.isInStockOnly()
+                        && !stock.inStock(columns.getProductCode(ordinal), columns.getSizeMask(ordinal), sizes)) continue;
+                samePrice.add(ordinal);
+            }
+            samePrice.sort(Comparator.comparingLong(columns::getProductCode));
+            for(int i = 0; i < samePrice.size() && count < wanted; i++) found[count++] = samePrice.get(i);
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Clears the garments with none left in any of the sizes being searched for
+     * @param matches The ordinals of the garments that match everything else : BitSet
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     */
+    private void dropOutOfStock(BitSet matches, GarmentSpecs dreamGarment){
+        long sizes = dreamGarment.hasFilter(Filter.SIZE) ? dreamGarment.getValueMask(Filter.SIZE) : -1L;
+        for(int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)){
+            if(!stock.inStock(columns.getProductCode(i), columns.getSizeMask(i), sizes)) matches.clear(i);
+        }
+    }
+
+    /**
+     * Looks a garment up by product code, in the product code index
+     * @param productCode A garment's product code : long
+     * @return The garment with that product code, or null if there isn't one in this version : Garment
+     */
+    @Override
+    public Garment findGarment(long productCode){
+        int ordinal = productCodes.find(productCode);
+        return ordinal == ProductCodeIndex.ABSENT ? null : columns.materialise(ordinal);
+    }
+
+    /**
+     * Finds the ordinals of the garments matching the user's search criteria, as findMatch does, without building any
+     * Garment objects
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return The ordinals of the matching garments in this version : BitSet
+     */
+    public BitSet matchingOrdinals(GarmentSpecs dreamGarment){
+        BitSet matches = evaluate(planner.plan(dreamGarment), dreamGarment);
+        if(dreamGarment.isInStockOnly()) dropOutOfStock(matches, dreamGarment);
+        return matches;
+    }
+
+    /**
+     * Narrows down the matches of an earlier search of this version to those matching criteria that refine it,
+     * checking just those garments one at a time, straight from the columns, rather than the whole inventory. If
+     * there are so many of them that bitmaps would be cheaper (see PRICE_FIRST_RATIO), the bitmaps are used instead.
+     * @param previous Ordinals matched in this version by criteria that dreamGarment refines : BitSet
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @return The ordinals of the matching garments in this version : BitSet
+     */
+    public BitSet refineMatches(BitSet previous, GarmentSpecs dreamGarment){
+        if(previous.cardinality() >= columns.size() / PRICE_FIRST_RATIO) return matchingOrdinals(dreamGarment);
+        QueryPlan plan = planner.plan(dreamGarment);
+        BitSet matches = new BitSet(columns.size());
+        for(int i = previous.nextSetBit(0); i >= 0; i = previous.nextSetBit(i + 1)){
+            if(stepsPassed(i, dreamGarment, plan) == plan.size()) matches.set(i);
+        }
+        if(dreamGarment.isInStockOnly()) dropOutOfStock(matches, dreamGarment); // stock may have run out since
+        return matches;
+    }
+
+    /**
+     * Checks whether any of a set of garments matches the user's search criteria, whether or not it's still in this
+     * version. Given the garments changed between two versions, it tells whether a search's result could differ
+     * between them: a search whose criteria none of them match finds the same garments in both.
+     * @param ordinals Ordinals of garments added, replaced or removed : BitSet
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @return true if any of them matches everything but the stock rule : boolean
+     */
+    public boolean anyMatches(BitSet ordinals, GarmentSpecs dreamGarment){
+        QueryPlan plan = planner.plan(dreamGarment);
+        for(int i = ordinals.nextSetBit(0); i >= 0 && i < columns.size(); i = ordinals.nextSetBit(i + 1)){
+            if(stepsPassed(i, dreamGarment, plan) == plan.size()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs a search the same way findMatch does and reports how it went
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @return The order the criteria were checked in, with estimated and actual candidate counts : String
+     */
+    public String explain(GarmentSpecs dreamGarment){
+        QueryPlan plan = planner.plan(dreamGarment);
+        BitSet matches = evaluate(plan, dreamGarment);
+        if(!dreamGarment.isInStockOnly()) return plan.describe() + "\nMatches: " + matches.cardinality();
+        int beforeStock = matches.cardinality();
+        dropOutOfStock(matches, dreamGarment);
+        return plan.describe() + "\nMatches: " + beforeStock + "\nIn stock: " + matches.cardinality();
+    }
+
+    /**
+     * Runs a query plan, recording the actual number of candidates left after each step
+     * @param plan The order to check the criteria in : QueryPlan
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @return BitSet of the ordinals of every matching garment
+     */
+    private BitSet evaluate(QueryPlan plan, GarmentSpecs dreamGarment){
+        int garmentCount = columns.size();
+        int cheapest = priceIndex.firstAtLeast(dreamGarment.getMinPrice());
+        int inPriceRange = Math.max(0, priceIndex.firstAbove(dreamGarment.getMaxPrice()) - cheapest);
+        BitSet candidates = new BitSet(garmentCount);
+        if(plan.getStep(0) == null && inPriceRange < garmentCount / PRICE_FIRST_RATIO){ // narrow price range first
+            plan.setGarmentByGarment(true);
+            int[] survivors = new int[plan.size()];
+            for(int position = cheapest; position < cheapest + inPriceRange; position++){
+                int ordinal = priceIndex.ordinalAt(position);
+                if(!liveOrdinals.get(ordinal)) continue; // removed or replaced since it was indexed
+                int passed = stepsPassed(ordinal, dreamGarment, plan);
+                for(int step = 0; step < passed; step++) survivors[step]++;
+                if(passed == plan.size()) candidates.set(ordinal);
+            }
+            for(int step = 0; step < plan.size(); step++) plan.setActual(step, survivors[step]);
+            return candidates;
+        }
+        candidates.or(liveOrdinals); // every garment is a candidate until a criterion says otherwise
+        for(int step = 0; step < plan.size() && !candidates.isEmpty(); step++){
+            Filter filter = plan.getStep(step);
+            if(filter != null) candidates.and(criterionMatches(filter, dreamGarment));
+            else if(inPriceRange < candidates.cardinality()){ // fewer garments in the price range than candidates
+                BitSet priced = new BitSet(garmentCount);
+                for(int position = cheapest; position < cheapest + inPriceRange; position++){
+                    priced.set(priceIndex.ordinalAt(position));
+                }
+                candidates.and(priced);
+            } else { // fewer candidates, so just check their prices
+                for(int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)){
+                    double price = columns.getPrice(i);
+                    if(price<dreamGarment.getMinPrice()||price>dreamGarment.getMaxPrice()) candidates.clear(i);
+                }
+            }
+            plan.setActual(step, candidates.cardinality()); // steps skipped once nothing is left stay at 0
+        }
+        return candidates;
+    }
+
+    /**
+     * Builds the bitmap of garments passing one criterion, with the same semantics as GarmentSpecs.matches:
+     * a garment without the searched Filter is not ruled out by it, and a Set on either side means "any overlap".
+     * @param filter The Filter the criterion is on : Filter
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @return BitSet of the ordinals of every garment passing the criterion
+     */
+    private BitSet criterionMatches(Filter filter, GarmentSpecs dreamGarment){
+        int garmentCount = columns.size();
+        BitSet criterionMatches = new BitSet(garmentCount);
+        criterionMatches.set(0, garmentCount);
+        BitSet present = filterPresence.get(filter);
+        if(present != null) criterionMatches.andNot(present); // garments without this filter always pass it
+        List<BitSet> valueBitmaps = filterIndex.getOrDefault(filter, Collections.emptyList());
+        if(filter == Filter.BRAND){
+            for(int brandId : dreamGarment.getBrandIds()){
+                if(brandId < valueBitmaps.size()) criterionMatches.or(valueBitmaps.get(brandId));
+            }
+        } else {
+            long valueMask = dreamGarment.getValueMask(filter);
+            while(valueMask != 0){ // OR in the bitmap of each value in the mask
+                int valueId = Long.numberOfTrailingZeros(valueMask);
+                valueMask &= valueMask - 1;
+                if(valueId < valueBitmaps.size()) criterionMatches.or(valueBitmaps.get(valueId));
+            }
+        }
+        return criterionMatches;
+    }
+
+    /**
+     * Checks a single garment against the criteria in plan order by reading its values straight out of the columns,
+     * with the same semantics as criterionMatches, stopping at the first criterion it fails
+     * @param ordinal The garment's ordinal : int
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @param plan The order to check the criteria in : QueryPlan
+     * @return The number of steps passed before the first failure, or plan.size() if the garment matches : int
+     */
+    private int stepsPassed(int ordinal, GarmentSpecs dreamGarment, QueryPlan plan){
+        for(int step = 0; step < plan.size(); step++){
+            Filter filter = plan.getStep(step);
+            if(filter == null){
+                double price = columns.getPrice(ordinal);
+                if(price<dreamGarment.getMinPrice()||price>dreamGarment.getMaxPrice()) return step;
+            } else if(filter == Filter.SIZE){
+                short sizeMask = columns.getSizeMask(ordinal);
+                if(sizeMask == GarmentColumns.ABSENT) continue; // garments without this filter always pass it
+                if((dreamGarment.getValueMask(filter) & sizeMask) == 0) return step;
+            } else {
+                int valueId = columns.getValueId(filter, ordinal);
+                if(valueId == GarmentColumns.ABSENT) continue;
+                if(filter == Filter.BRAND ? !dreamGarment.hasBrandId(valueId)
+                        : (dreamGarment.getValueMask(filter) & (1L << valueId)) == 0) return step;
+            }
+        }
+        return plan.size();
+    }
+
+}
@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks that an OrderJournal never loses an order it has said is safe: a batch of orders too small to fill a
+ * SyncPolicy.everyOrders batch still reaches the disk, a record left torn by a crash is cut off when the journal is
+ * opened again, and a record damaged before the last stops it opening rather than cutting off the orders after it.
+ * Run as
+ * java JournalCheck
+ */
+public class JournalCheck {
+    /*------------------FIELDS------*/
+    private static final int ORDERS = 5;
+    private static final long WAIT_SECONDS = 3; // the partial batch is forced within a second, so this is plenty
+    private static boolean failed = false;
+
+    /**
+     * main method
+     * @param args - not used
+     * @throws Exception if the journal can't be written or read at all
+     */
+    public static void main(String[] args) throws Exception {
+        Path path = Files.createTempFile("orders", ".journal");
+        Files.delete(path); // open() creates it
+        try {
+            Geek geek = new Geek("Walter", "walter@example.com");
+            Garment garment = new Garment("Hot item", 1, 10, "Everyone wants one",
+                    new GarmentSpecs(new HashMap<>(), 0, Double.MAX_VALUE));
+
+            try (OrderJournal journal = OrderJournal.open(path, OrderJournal.SyncPolicy.everyOrders(ORDERS * 10))) {
+                List<CompletableFuture<Long>> written = new ArrayList<>();
+                for (int i = 0; i < ORDERS; i++) written.add(journal.append(geek, garment, "order " + i));
+                long began = System.nanoTime();
+                try {
+                    for (CompletableFuture<Long> order : written) order.get(WAIT_SECONDS, TimeUnit.SECONDS);
+                    check(true, "partial batch forced in " + (System.nanoTime() - began) / 1_000_000 + " ms");
+                } catch (TimeoutException e) {
+                    check(false, "partial batch still waiting after " + WAIT_SECONDS + " s");
+                }
+            }
+            byte[] whole = Files.readAllBytes(path);
+
+            Files.write(path, Arrays.copyOf(whole, whole.length - 3)); // the last write was interrupted
+            OrderJournal.open(path, OrderJournal.SyncPolicy.everyOrder()).close();
+            check(OrderJournal.read(path).size() == ORDERS - 1, "torn last record cut off");
+
+            byte[] damaged = whole.clone();
+            damaged[damaged.length / 4] ^= 1; // somewhere in one of the first orders
+            Files.write(path, damaged);
+            try {
+                OrderJournal.open(path, OrderJournal.SyncPolicy.everyOrder()).close();
+                check(false, "damaged journal opened");
+            } catch (IOException e) {
+                check(Arrays.equals(Files.readAllBytes(path), damaged), "damaged journal refused and left as it was");
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+        if (failed) System.exit(1);
+    }
+
+    private static void check(boolean passed, String what) {
+        System.out.println((passed ? "OK: " : "FAILED: ") + what);
+        failed |= !passed;
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the server: writing strings and numbers, and reading a flat object of strings, numbers,
+ * booleans and nulls
+ */
+public class Json {
+
+    private Json() {
+        // static methods only
+    }
+
+    /**
+     * @param text Any string : String
+     * @return The string as a quoted JSON string, with anything that needs it escaped : String
+     */
+    public static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+                    else quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Parses a JSON object whose values are all strings, numbers, booleans or null
+     * @param text The JSON : String
+     * @return The object's members in order; numbers are Doubles : Map
+     * @throws IllegalArgumentException if the text isn't such an object
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Reader reader = new Reader(text);
+        Map<String, Object> members = new LinkedHashMap<>();
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                String name = reader.string();
+                reader.expect(':');
+                members.put(name, reader.value());
+            } while (reader.consume(','));
+            reader.expect('}');
+        }
+        reader.skipWhitespace();
+        if (!reader.atEnd()) throw reader.problem("Unexpected text after the object");
+        return members;
+    }
+
+    /**
+     * Reads through the JSON text one token at a time
+     */
+    private static class Reader {
+        private final String text;
+        private int position = 0;
+
+        private Reader(String text) {
+            this.text = text;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+
+        private boolean atEnd() {
+            return position == text.length();
+        }
+
+        /**
+         * @param c The character that should come next, after any whitespace : char
+         * @return true if it was there, and has been read past : boolean
+         */
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) throw problem("Expected '" + c + "'");
+        }
+
+        /**
+         * @return The next value, which can't be an object or an array : Object
+         */
+        private Object value() {
+            skipWhitespace();
+            if (position == text.length()) throw problem("Expected a value");
+            char c = text.charAt(position);
+            if (c == '"') return string();
+            if (text.startsWith("true", position)) return literal("true", Boolean.TRUE);
+            if (text.startsWith("false", position)) return literal("false", Boolean.FALSE);
+            if (text.startsWith("null", position)) return literal("null", null);
+            int start = position;
+            while (position < text.length() && "+-.eE0123456789".indexOf(text.charAt(position)) >= 0) position++;
+            try {
+                return Double.parseDouble(text.substring(start, position));
+            } catch (NumberFormatException n) {
+                position = start;
+                throw problem("Expected a string, number, boolean or null");
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            position += word.length();
+            return value;
+        }
+
+        /**
+         * @return The next string, with its escapes decoded : String
+         */
+        private String string() {
+            expect('"');
+            StringBuilder string = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) throw problem("Unterminated string");
+                char c = text.charAt(position++);
+                if (c == '"') return string.toString();
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                if (position >= text.length()) throw problem("Unterminated string");
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> string.append(escaped);
+                    case 'b' -> string.append('\b');
+                    case 'f' -> string.append('\f');
+                    case 'n' -> string.append('\n');
+                    case 'r' -> string.append('\r');
+                    case 't' -> string.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) throw problem("Bad \\u escape");
+                        try {
+                            string.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException n) {
+                            throw problem("Bad \\u escape");
+                        }
+                        position += 4;
+                    }
+                    default -> throw problem("Bad escape \\" + escaped);
+                }
+            }
+        }
+
+        private IllegalArgumentException problem(String problem) {
+            return new IllegalArgumentException(problem + " at position " + position + " of the JSON");
+        }
+    }
+}
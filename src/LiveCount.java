@@ -0,0 +1,104 @@
+import javax.swing.JLabel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Shows how many garments the search view's criteria match, kept up to date as the user changes them. Changes are
+ * debounced, so typing a price or dragging across a list counts once, when the user pauses, and the counting is done
+ * off the event thread, a newer count cancelling an older one.
+ * <p>
+ * Counting an Inventory builds no Garment objects: the matches are found as a bitmap of ordinals. The last count's
+ * matches are kept, and when the new criteria refine the last ones (a brand or a type specific option added, a size
+ * taken away, the price range narrowed), only those matches are checked again, garment by garment. A change that
+ * broadens the criteria, or a newer version of the inventory, goes back to the index. Any other catalog is counted by
+ * streaming its search.
+ */
+public class LiveCount {
+    /*------------------FIELDS------*/
+    private static final int DEBOUNCE_MILLIS = 250; // how long the user has to pause before the criteria are counted
+    private final GarmentCatalog catalog;
+    private final Inventory inventory; // the catalog's inventory, or null if it isn't one
+    private final Supplier<GarmentSpecs> criteria;
+    private final JLabel label;
+    private final Timer debounce;
+    private SwingWorker<Counted, Void> counting = null; // the count under way, if there is one
+    private volatile Counted last = null; // the last count finished, for the next to refine
+
+    /**
+     * A count, and what it counted
+     * @param specs The criteria counted : GarmentSpecs
+     * @param version The version they were counted in, or null if the catalog isn't an inventory : InventoryVersion
+     * @param matches The ordinals of the matches in that version, or null : BitSet
+     * @param count How many garments matched : long
+     */
+    private record Counted(GarmentSpecs specs, InventoryVersion version, BitSet matches, long count) {
+    }
+
+    /**
+     * Constructor for LiveCount
+     * @param catalog The garments to count : GarmentCatalog
+     * @param criteria Gives the criteria as they stand, on the event thread : Supplier
+     * @param label Where to show the count : JLabel
+     */
+    public LiveCount(GarmentCatalog catalog, Supplier<GarmentSpecs> criteria, JLabel label) {
+        this.catalog = catalog;
+        this.inventory = catalog instanceof SearchCache cache ? cache.getInventory()
+                : catalog instanceof Inventory searched ? searched : null;
+        this.criteria = criteria;
+        this.label = label;
+        debounce = new Timer(DEBOUNCE_MILLIS, e -> count());
+        debounce.setRepeats(false);
+    }
+
+    /**
+     * Counts the criteria again once the user stops changing them. Call on the event thread after every change.
+     */
+    public void criteriaChanged() {
+        debounce.restart();
+    }
+
+    /**
+     * Starts counting the criteria as they stand on a background thread, cancelling any count still under way
+     */
+    private void count() {
+        if (counting != null) counting.cancel(false);
+        GarmentSpecs specs = criteria.get();
+        counting = new SwingWorker<>() {
+            @Override
+            protected Counted doInBackground() {
+                return count(specs, last);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) return; // a newer count is on its way
+                try {
+                    Counted counted = get();
+                    last = counted;
+                    label.setText(String.format(counted.count() == 1 ? "%,d matching garment" : "%,d matching garments",
+                            counted.count()));
+                } catch (InterruptedException | ExecutionException e) {
+                    label.setText(" "); // the count is only a guide, so leave it off rather than get in the way
+                }
+            }
+        };
+        counting.execute();
+    }
+
+    /**
+     * @param specs The criteria to count : GarmentSpecs
+     * @param previous The last count, or null : Counted
+     * @return The count : Counted
+     */
+    private Counted count(GarmentSpecs specs, Counted previous) {
+        if (inventory == null) return new Counted(specs, null, null, catalog.search(specs).count());
+        InventoryVersion now = inventory.snapshot();
+        BitSet matches = previous != null && previous.version() == now && specs.refines(previous.specs())
+                ? now.refineMatches(previous.matches(), specs) // ordinals only mean anything within one version
+                : now.matchingOrdinals(specs);
+        return new Counted(specs, now, matches, matches.cardinality());
+    }
+}
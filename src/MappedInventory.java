@@ -0,0 +1,393 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A read-only catalog searched straight out of a memory-mapped InventorySnapshot. Nothing is copied onto the heap
+ * when it's opened except the brand table, so the operating system's page cache holds the garments (shared with any
+ * other process that maps the same file). The file is read through once as it's opened, to check it.
+ * Searches scan the fixed-width records in place; Garment objects are only built for the ones that match.
+ */
+public class MappedInventory implements GarmentCatalog {
+    /*------------------FIELDS------*/
+    private static final Filter[] FILTERS = Filter.values();
+    private static final GarmentType[] GARMENT_TYPES = GarmentType.values();
+    private static final int PARALLEL_THRESHOLD = 65536; // findMatch scans snapshots of at least this many in parallel
+    // where each value is within a record, see InventorySnapshot
+    private static final int PRICE = Long.BYTES;
+    private static final int BRAND = PRICE + Double.BYTES;
+    private static final int SIZES = BRAND + Integer.BYTES;
+    private static final int VALUES = SIZES + Short.BYTES;
+    private final Path path;
+    private final InventorySnapshot.Header header;
+    private final MappedByteBuffer records; // garment count * RECORD_BYTES
+    private final MappedByteBuffer offsets; // where each name and description starts in the string heap
+    private final MappedByteBuffer strings; // the string heap
+    private final int[] brandIds; // brand table number -> BrandDictionary id
+    private final Set<String> allBrands; // the writer only puts brands that have garments in the brand table
+    private int[] brandCounts; // per brand table number, counted on first use
+    private double[] typeMinPrices; // per GarmentType ordinal, found on first use
+    private ProductCodeIndex productCodes; // record number by product code, sorted on first use
+    private double[] typeMaxPrices;
+
+    /**
+     * Constructor for MappedInventory, only called by open()
+     */
+    private MappedInventory(Path path, InventorySnapshot.Header header, MappedByteBuffer records,
+                            MappedByteBuffer offsets, MappedByteBuffer strings, int[] brandIds) {
+        this.path = path;
+        this.header = header;
+        this.records = records;
+        this.offsets = offsets;
+        this.strings = strings;
+        this.brandIds = brandIds;
+        Set<String> brands = new LinkedHashSet<>();
+        for (int brandId : brandIds) brands.add(BrandDictionary.nameOf(brandId));
+        this.allBrands = Collections.unmodifiableSet(brands);
+    }
+
+    /**
+     * Maps a snapshot written by Inventory.writeSnapshot, and checks it as InventorySnapshot.load does: the header,
+     * the length of the file, the checksum, and that every record's values are in range. That means reading the file
+     * through once, but nothing is copied onto the heap, and a damaged snapshot fails here rather than in the middle
+     * of a search.
+     * @param path The snapshot file : Path
+     * @return The mapped catalog : MappedInventory
+     * @throws IOException if the file can't be mapped, isn't a snapshot this version can read, or is corrupt
+     */
+    public static MappedInventory open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) { // mappings outlive the channel
+            ByteBuffer start = ByteBuffer.allocate(InventorySnapshot.HEADER_BYTES);
+            while (start.hasRemaining() && channel.read(start, start.position()) > 0) {
+                // keep reading until the header is full
+            }
+            InventorySnapshot.Header header = InventorySnapshot.Header.read(start, channel.size(), path);
+            long recordBytes = (long) header.garmentCount * InventorySnapshot.RECORD_BYTES;
+            if (recordBytes > Integer.MAX_VALUE) throw new IOException(path + " has too many garments to map");
+            MappedByteBuffer brandTable = channel.map(FileChannel.MapMode.READ_ONLY, InventorySnapshot.HEADER_BYTES,
+                    header.brandTableBytes);
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, header.recordsStart(), recordBytes);
+            MappedByteBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, header.offsetsStart(),
+                    header.heapStart() - header.offsetsStart());
+            MappedByteBuffer strings = channel.map(FileChannel.MapMode.READ_ONLY, header.heapStart(), header.heapBytes);
+            header.verify(path, brandTable, records, offsets, strings); // between them, everything after the header
+            int[] brandIds = InventorySnapshot.readBrandTable(brandTable, path);
+            for (int g = 0; g < header.garmentCount; g++) {
+                InventorySnapshot.checkRecord(records, g * InventorySnapshot.RECORD_BYTES, offsets,
+                        2 * g * Integer.BYTES, brandIds.length, header.heapBytes, path);
+            }
+            return new MappedInventory(path, header, records, offsets, strings, brandIds);
+        }
+    }
+
+    /**
+     * @return The number of garments in the catalog : int
+     */
+    public int size() {
+        return header.garmentCount;
+    }
+
+    /**
+     * @return A read-only Set containing the Strings of all the available brands
+     */
+    @Override
+    public Set<String> getAllBrands() {
+        return allBrands;
+    }
+
+    /**
+     * Counts every brand's garments the first time it's called, with one scan of the records
+     * @param brand The brand's name : String
+     * @return The number of garments of that brand : int
+     */
+    @Override
+    public int getBrandCount(String brand) {
+        int brandId = BrandDictionary.lookup(brand);
+        int[] counts = aggregates();
+        for (int b = 0; b < brandIds.length; b++) if (brandIds[b] == brandId) return counts[b];
+        return 0;
+    }
+
+    /**
+     * @return double : maximum price of a garment, stored in the header, or 0 if there are none
+     */
+    @Override
+    public double findMaxPrice() {
+        return header.maxPrice;
+    }
+
+    /**
+     * @return double : minimum price of a garment, stored in the header, or 0 if there are none
+     */
+    @Override
+    public double findMinPrice() {
+        return header.minPrice;
+    }
+
+    /**
+     * @param type The type of garment : GarmentType
+     * @return double : maximum price of a garment of that type, or 0 if there are none
+     */
+    @Override
+    public double findMaxPrice(GarmentType type) {
+        aggregates();
+        return typeMaxPrices[type.ordinal()];
+    }
+
+    /**
+     * @param type The type of garment : GarmentType
+     * @return double : minimum price of a garment of that type, or 0 if there are none
+     */
+    @Override
+    public double findMinPrice(GarmentType type) {
+        aggregates();
+        return typeMinPrices[type.ordinal()];
+    }
+
+    /**
+     * Works out the brand counts and the price bounds of each type of garment, the first time one is asked for
+     * @return The garment count of each brand table number : int[]
+     */
+    private synchronized int[] aggregates() {
+        if (brandCounts != null) return brandCounts;
+        int[] counts = new int[brandIds.length];
+        double[] minPrices = new double[GARMENT_TYPES.length];
+        double[] maxPrices = new double[GARMENT_TYPES.length];
+        boolean[] seen = new boolean[GARMENT_TYPES.length];
+        for (int record = 0; record < records.limit(); record += InventorySnapshot.RECORD_BYTES) {
+            int brand = records.getInt(record + BRAND);
+            if (brand != GarmentColumns.ABSENT) counts[brand]++;
+            int type = records.get(record + VALUES + Filter.GARMENT_TYPE.ordinal());
+            if (type == GarmentColumns.ABSENT) continue;
+            double price = records.getDouble(record + PRICE);
+            minPrices[type] = seen[type] ? Math.min(minPrices[type], price) : price;
+            maxPrices[type] = seen[type] ? Math.max(maxPrices[type], price) : price;
+            seen[type] = true;
+        }
+        typeMinPrices = minPrices;
+        typeMaxPrices = maxPrices;
+        return brandCounts = counts;
+    }
+
+    /**
+     * Scans every record in place for the ones matching the user's search criteria, with the same semantics as
+     * GarmentSpecs.matches: a garment without a searched Filter is not ruled out by it. A mapped catalog doesn't
+     * count stock, so asking for garments in stock makes no difference. A snapshot of at least PARALLEL_THRESHOLD
+     * garments is scanned in parallel on the common ForkJoinPool.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return matchingGarments : The matching Garment objects, in the order they are in the snapshot. A mapped
+     * catalog never changes, so they are always version 0 : SearchResults
+     */
+    @Override
+    public SearchResults findMatch(GarmentSpecs dreamGarment) {
+        if (header.garmentCount >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            // each worker scans its own range of records, and the ranges' matches are joined back in order
+            return new SearchResults(Arrays.asList(search(dreamGarment).parallel().toArray(Garment[]::new)), 0);
+        }
+        List<Garment> matchingGarments = new ArrayList<>();
+        for (int g = 0; g < header.garmentCount; g++) {
+            if (matches(g * InventorySnapshot.RECORD_BYTES, dreamGarment)) matchingGarments.add(materialise(g));
+        }
+        return new SearchResults(matchingGarments, 0);
+    }
+
+    /**
+     * Counts the records matching the user's search criteria in place, building no garments
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return How many garments findMatch would find : long
+     */
+    @Override
+    public long count(GarmentSpecs dreamGarment) {
+        long count = 0;
+        for (int g = 0; g < header.garmentCount; g++) {
+            if (matches(g * InventorySnapshot.RECORD_BYTES, dreamGarment)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Scans the records in place for the ones matching the user's search criteria, as the stream asks for them, so a
+     * stream that stops early stops the scan too. How many will match isn't known until they've all been scanned, so
+     * the stream isn't SIZED; a parallel stream splits the records into halves, scanned separately.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return The matching garments, in the order they are in the snapshot : Stream
+     */
+    @Override
+    public Stream<Garment> search(GarmentSpecs dreamGarment) {
+        return StreamSupport.stream(new RecordSpliterator(0, header.garmentCount, dreamGarment), false);
+    }
+
+    /**
+     * Scans a range of records for matches
+     */
+    private class RecordSpliterator implements Spliterator<Garment> {
+        private static final int MIN_SPLIT = 4096; // fewer records than this aren't worth handing to another thread
+        private final GarmentSpecs dreamGarment;
+        private int next; // the next record to scan
+        private final int end; // one past the last
+
+        RecordSpliterator(int next, int end, GarmentSpecs dreamGarment) {
+            this.next = next;
+            this.end = end;
+            this.dreamGarment = dreamGarment;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Garment> action) {
+            while (next < end) {
+                int g = next++;
+                if (matches(g * InventorySnapshot.RECORD_BYTES, dreamGarment)) {
+                    action.accept(materialise(g));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Garment> trySplit() {
+            if (end - next < MIN_SPLIT) return null;
+            int middle = (next + end) >>> 1;
+            RecordSpliterator firstHalf = new RecordSpliterator(next, middle, dreamGarment);
+            next = middle;
+            return firstHalf;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next; // at most
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Finds one page of the garments matching the user's search criteria, sorted. Every record is still scanned in
+     * place, but only the first of the matches are kept, in a BoundedHeap, and only the ones on the page are built.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @param sortKey The order to put the results in : SortKey
+     * @param limit The most garments to put on the page : int
+     * @param cursor Where the last page ended, or null for the first page : PageCursor
+     * @return The page of garments, always version 0 : SearchPage
+     */
+    @Override
+    public SearchPage findPage(GarmentSpecs dreamGarment, SortKey sortKey, int limit, PageCursor cursor) {
+        if (limit < 1) throw new IllegalArgumentException("A page must hold at least 1 garment");
+        boolean byName = sortKey == SortKey.NAME; // names are only read out of the string heap if they're needed
+        BoundedHeap first = new BoundedHeap(limit + 1, (a, b) -> sortKey.compare(
+                price(a), byName ? name(a) : null, productCode(a), price(b), byName ? name(b) : null, productCode(b)));
+        for (int g = 0; g < header.garmentCount; g++) {
+            if (!matches(g * InventorySnapshot.RECORD_BYTES, dreamGarment)) continue;
+            if (cursor == null || cursor.isBefore(price(g), byName ? name(g) : null, productCode(g))) first.offer(g);
+        }
+        int[] page = first.drainSorted();
+        List<Garment> garments = new ArrayList<>(Math.min(limit, page.length));
+        for (int i = 0; i < Math.min(limit, page.length); i++) garments.add(materialise(page[i]));
+        PageCursor next = page.length > limit ? new PageCursor(sortKey, garments.get(limit - 1)) : null;
+        return new SearchPage(garments, 0, next);
+    }
+
+    private double price(int g) {
+        return records.getDouble(g * InventorySnapshot.RECORD_BYTES + PRICE);
+    }
+
+    private long productCode(int g) {
+        return records.getLong(g * InventorySnapshot.RECORD_BYTES);
+    }
+
+    private String name(int g) {
+        return string(offsets.getInt(2 * g * Integer.BYTES), offsets.getInt((2 * g + 1) * Integer.BYTES));
+    }
+
+    /**
+     * Looks a garment up by product code, with a binary search of the product codes. They're read from the records
+     * and sorted the first time a garment is looked up, so opening the snapshot doesn't have to.
+     * @param productCode A garment's product code : long
+     * @return The garment with that product code, or null if there isn't one : Garment
+     */
+    @Override
+    public Garment findGarment(long productCode) {
+        int g = productCodes().find(productCode);
+        return g == ProductCodeIndex.ABSENT ? null : materialise(g);
+    }
+
+    /**
+     * @return The record number of each garment, by product code : ProductCodeIndex
+     */
+    private synchronized ProductCodeIndex productCodes() {
+        if (productCodes != null) return productCodes;
+        long[] codes = new long[header.garmentCount];
+        int[] numbers = new int[codes.length];
+        for (int g = 0; g < codes.length; g++) {
+            codes[g] = records.getLong(g * InventorySnapshot.RECORD_BYTES);
+            numbers[g] = g;
+        }
+        return productCodes = ProductCodeIndex.sorted(codes, numbers);
+    }
+
+    /**
+     * @param record Where the garment's record starts : int
+     * @param dreamGarment : The user's 'dream garment' : GarmentSpecs
+     * @return true if the garment passes every criterion : boolean
+     */
+    private boolean matches(int record, GarmentSpecs dreamGarment) {
+        double price = records.getDouble(record + PRICE);
+        if (price < dreamGarment.getMinPrice() || price > dreamGarment.getMaxPrice()) return false;
+        for (Filter filter : FILTERS) {
+            if (!dreamGarment.hasFilter(filter)) continue;
+            if (filter == Filter.BRAND) {
+                int brand = records.getInt(record + BRAND);
+                if (brand != GarmentColumns.ABSENT && !dreamGarment.hasBrandId(brandIds[brand])) return false;
+            } else if (filter == Filter.SIZE) {
+                short sizeMask = records.getShort(record + SIZES);
+                if (sizeMask != GarmentColumns.ABSENT && (dreamGarment.getValueMask(filter) & sizeMask) == 0) return false;
+            } else {
+                byte valueOrdinal = records.get(record + VALUES + filter.ordinal());
+                if (valueOrdinal != GarmentColumns.ABSENT && (dreamGarment.getValueMask(filter) & (1L << valueOrdinal)) == 0) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds a Garment object out of a record and its strings
+     * @param g The garment's position in the snapshot : int
+     * @return A new Garment : Garment
+     */
+    private Garment materialise(int g) {
+        int record = g * InventorySnapshot.RECORD_BYTES;
+        byte[] valueOrdinals = new byte[FILTERS.length];
+        records.get(record + VALUES, valueOrdinals);
+        int brand = records.getInt(record + BRAND);
+        int nameStart = offsets.getInt(2 * g * Integer.BYTES);
+        int descriptionStart = offsets.getInt((2 * g + 1) * Integer.BYTES);
+        int descriptionEnd = offsets.getInt((2 * g + 2) * Integer.BYTES);
+        return GarmentColumns.materialise(records.getLong(record), records.getDouble(record + PRICE),
+                string(nameStart, descriptionStart), string(descriptionStart, descriptionEnd),
+                brand == GarmentColumns.ABSENT ? GarmentColumns.ABSENT : brandIds[brand],
+                records.getShort(record + SIZES), valueOrdinals);
+    }
+
+    /**
+     * @param start Where the string starts in the string heap : int
+     * @param end Where it ends : int
+     * @return The string : String
+     */
+    private String string(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        strings.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Walks the set bits of a bitmap of matching garment ordinals, building each Garment only when the stream asks for
+ * it. It knows exactly how many matches it holds, and splits into halves holding exactly half the matches each, so
+ * count() needs no walk at all, and a parallel stream's threads all get the same amount of work however the matches
+ * are spread over the ordinals. Splitting only counts bits, a word at a time; nothing is copied.
+ */
+public class MatchSpliterator implements Spliterator<Garment> {
+    /*------------------FIELDS------*/
+    private static final int MIN_SPLIT = 1024; // fewer matches than this aren't worth handing to another thread
+    private final long[] words; // the bitmap, 64 ordinals a word, shared by every split
+    private final IntFunction<Garment> materialise; // ordinal -> new Garment
+    private int next; // the lowest ordinal this split hasn't handed out yet
+    private final int end; // one past the highest ordinal this split covers
+    private long remaining; // matches from next to end
+
+    /**
+     * Constructor for MatchSpliterator, covering every match in the bitmap
+     * @param words The bitmap, as BitSet.toLongArray() gives it : long[]
+     * @param matches The number of bits set in it : long
+     * @param materialise Builds the Garment at an ordinal : IntFunction
+     */
+    public MatchSpliterator(long[] words, long matches, IntFunction<Garment> materialise) {
+        this(words, 0, words.length * Long.SIZE, matches, materialise);
+    }
+
+    private MatchSpliterator(long[] words, int next, int end, long remaining, IntFunction<Garment> materialise) {
+        this.words = words;
+        this.next = next;
+        this.end = end;
+        this.remaining = remaining;
+        this.materialise = materialise;
+    }
+
+    /**
+     * @param from An ordinal : int
+     * @return The first match at or after it, or end if there isn't one before end : int
+     */
+    private int nextMatch(int from) {
+        int word = from >>> 6;
+        if (from >= end) return end;
+        long bits = words[word] & (-1L << from); // shifts only use the low 6 bits, so this drops those below from
+        while (bits == 0) {
+            if (++word >= words.length) return end;
+            bits = words[word];
+        }
+        return Math.min(end, (word << 6) + Long.numberOfTrailingZeros(bits));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Garment> action) {
+        if (remaining == 0) return false;
+        int ordinal = nextMatch(next);
+        next = ordinal + 1;
+        remaining--;
+        action.accept(materialise.apply(ordinal));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Garment> action) {
+        for (; remaining > 0; remaining--) {
+            int ordinal = nextMatch(next);
+            next = ordinal + 1;
+            action.accept(materialise.apply(ordinal));
+        }
+    }
+
+    /**
+     * Splits off the first half of the remaining matches, by finding the ordinal of the match halfway through
+     * @return A spliterator over the first half, or null if there are too few matches left to be worth it : Spliterator
+     */
+    @Override
+    public Spliterator<Garment> trySplit() {
+        if (remaining < MIN_SPLIT) return null;
+        long half = remaining / 2;
+        long seen = 0;
+        int word = next >>> 6;
+        long bits = words[word] & (-1L << next);
+        while (seen + Long.bitCount(bits) < half) { // whole words first
+            seen += Long.bitCount(bits);
+            bits = words[++word];
+        }
+        while (seen < half) { // then the bits of the word the halfway point is in
+            bits &= bits - 1;
+            seen++;
+        }
+        int middle = (word << 6) + Long.numberOfTrailingZeros(bits); // the first match of the second half
+        MatchSpliterator firstHalf = new MatchSpliterator(words, next, middle, half, materialise);
+        next = middle;
+        remaining -= half;
+        return firstHalf;
+    }
+
+    @Override
+    public long estimateSize() {
+        return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+    }
+}
@@ -0,0 +1,501 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of every order placed, for Greek Geek to then fulfill. Placing an order only encodes it and
+ * queues it; a background thread appends whatever has queued up in one write, and forces it to disk as often as the
+ * SyncPolicy says, so however many shoppers order at once, they share the cost of each fsync. Each order's future
+ * completes once its record is on disk (or once it's written, for SyncPolicy.never(), which only forces the journal
+ * when it's closed).
+ * <pre>
+ * record   payload length (int), CRC32 of the payload (int), payload
+ * payload  sequence number, time placed in epoch milliseconds, product code (longs), then the geek's name, their
+ *          email, the garment's name and the message, each as a length (int) and UTF-8 bytes, then the Size
+ *          ordinal (byte) if the order was for a particular size
+ * </pre>
+ * Everything is big-endian. A crash can leave the last record half written; opening the journal again cuts off
+ * anything after the last whole record. A record that's damaged anywhere else stops the journal opening instead, so
+ * the orders after it are never cut off with it.
+ */
+public class OrderJournal implements AutoCloseable {
+    /*------------------FIELDS------*/
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20; // anything claiming to be longer is a torn length
+    private static final long MAX_BATCH_NANOS = TimeUnit.SECONDS.toNanos(1); // longest a part batch waits, see everyOrders
+    private static final Pending CLOSE = new Pending(0, null); // tells the writer to finish up
+    private final Path path;
+    private final FileChannel channel;
+    private final SyncPolicy policy;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private long nextSequence; // guarded by this
+    private boolean closed; // guarded by this
+
+    /**
+     * How often the journal is forced to disk. Until it is, an order could be lost if the machine (rather than just
+     * the program) goes down, so its future doesn't complete until then.
+     */
+    public static class SyncPolicy {
+        private final int maxOrders; // force once this many orders are waiting
+        private final long maxNanos; // or once the oldest has waited this long
+
+        private SyncPolicy(int maxOrders, long maxNanos) {
+            this.maxOrders = maxOrders;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * @return A policy that forces every batch of orders to disk as soon as it's written : SyncPolicy
+         */
+        public static SyncPolicy everyOrder() {
+            return new SyncPolicy(1, 0);
+        }
+
+        /**
+         * @param orders How many orders can wait to be forced to disk : int
+         * @return A policy that forces the journal to disk every so many orders, or once the oldest has waited a
+         * second, so a batch that never fills up still gets there : SyncPolicy
+         */
+        public static SyncPolicy everyOrders(int orders) {
+            if (orders < 1) throw new IllegalArgumentException("orders must be at least 1");
+            return new SyncPolicy(orders, MAX_BATCH_NANOS);
+        }
+
+        /**
+         * @param millis How long an order can wait to be forced to disk : long
+         * @return A policy that forces the journal to disk every so many milliseconds : SyncPolicy
+         */
+        public static SyncPolicy everyMillis(long millis) {
+            if (millis < 0) throw new IllegalArgumentException("millis can't be negative");
+            return new SyncPolicy(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        /**
+         * @return A policy that leaves it to the operating system, which survives the program crashing but not the
+         * machine : SyncPolicy
+         */
+        public static SyncPolicy never() {
+            return new SyncPolicy(Integer.MAX_VALUE, Long.MAX_VALUE);
+        }
+
+        /**
+         * @return false if the journal is only forced to disk when it's closed : boolean
+         */
+        private boolean forces() {
+            return maxOrders != Integer.MAX_VALUE || maxNanos != Long.MAX_VALUE;
+        }
+
+        /**
+         * @param waiting Orders written but not yet forced to disk : int
+         * @param waitedNanos How long the oldest of them has waited : long
+         * @return true if they should be forced to disk now : boolean
+         */
+        private boolean due(int waiting, long waitedNanos) {
+            return waiting >= maxOrders || waitedNanos >= maxNanos;
+        }
+    }
+
+    /**
+     * An order that's been queued, and the future to complete once it's safely in the journal
+     */
+    private static class Pending {
+        private final long sequence;
+        private final ByteBuffer record;
+        private final CompletableFuture<Long> written = new CompletableFuture<>();
+
+        private Pending(long sequence, ByteBuffer record) {
+            this.sequence = sequence;
+            this.record = record;
+        }
+    }
+
+    /**
+     * One order, as read back from the journal
+     */
+    public static class Entry {
+        private final long sequence;
+        private final long placedMillis;
+        private final long productCode;
+        private final String name;
+        private final String email;
+        private final String garmentName;
+        private final String message;
+        private final Size size;
+
+        private Entry(ByteBuffer payload) {
+            sequence = payload.getLong();
+            placedMillis = payload.getLong();
+            productCode = payload.getLong();
+            name = string(payload);
+            email = string(payload);
+            garmentName = string(payload);
+            message = string(payload);
+            size = payload.hasRemaining() ? Size.values()[payload.get()] : null;
+        }
+
+        /**
+         * @return The order's number, counting up from 0 in the order they were placed : long
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return When the order was placed, in epoch milliseconds : long
+         */
+        public long getPlacedMillis() {
+            return placedMillis;
+        }
+
+        /**
+         * @return The product code of the garment ordered : long
+         */
+        public long getProductCode() {
+            return productCode;
+        }
+
+        /**
+         * @return The geek's name : String
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The geek's email address : String
+         */
+        public String getEmail() {
+            return email;
+        }
+
+        /**
+         * @return The name of the garment ordered : String
+         */
+        public String getGarmentName() {
+            return garmentName;
+        }
+
+        /**
+         * @return The size ordered, or null if the order wasn't for a particular size : Size
+         */
+        public Size getSize() {
+            return size;
+        }
+
+        /**
+         * @return The message included with the order : String
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * @return The order, laid out as the order files used to be : String
+         */
+        @Override
+        public String toString() {
+            return "Order details:\n\t" +
+                    "Order number: " + sequence +
+                    "\n\tName: " + name +
+                    "\n\tEmail Address: " + email +
+                    "\n\tItem: " + garmentName + " (" + productCode + ")" + (size == null ? "" : ", size " + size.name()) +
+                    "\n\tMessage from geek: " + message;
+        }
+    }
+
+    /**
+     * Prints every order in a journal, for whoever is fulfilling them
+     * @param args - the journal, ./orders.journal if not given
+     * @throws IOException if it can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        for (Entry entry : read(Path.of(args.length > 0 ? args[0] : "./orders.journal"))) {
+            System.out.println(entry);
+            System.out.println();
+        }
+    }
+
+    /**
+     * Constructor for OrderJournal, only called by open()
+     */
+    private OrderJournal(Path path, FileChannel channel, SyncPolicy policy, long nextSequence) {
+        this.path = path;
+        this.channel = channel;
+        this.policy = policy;
+        this.nextSequence = nextSequence;
+        writer = new Thread(this::writeQueued, "order journal " + path.getFileName());
+        writer.setDaemon(true); // close() is what waits for the queue to empty
+        writer.start();
+    }
+
+    /**
+     * Opens a journal for appending orders to, creating it if it doesn't exist, and cutting off any record left half
+     * written by a crash
+     * @param path The journal file : Path
+     * @param policy How often to force it to disk : SyncPolicy
+     * @return The journal : OrderJournal
+     * @throws IOException if it can't be opened, or a record before the last is damaged, in which case the file is
+     * left as it is
+     */
+    public static OrderJournal open(Path path, SyncPolicy policy) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            List<Entry> entries = new ArrayList<>();
+            long end = scan(path, channel, entries);
+            if (end < channel.size()) {
+                System.out.println("Order journal " + path + " ended in a torn record, cutting off its last "
+                        + (channel.size() - end) + " bytes");
+                channel.truncate(end);
+                channel.force(true);
+            }
+            channel.position(end);
+            long nextSequence = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).getSequence() + 1;
+            return new OrderJournal(path, channel, policy, nextSequence);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads back every whole order in a journal, ignoring a torn record at the end
+     * @param path The journal file : Path
+     * @return The orders, in the order they were placed : List
+     * @throws IOException if it can't be read, or a record before the last is damaged
+     */
+    public static List<Entry> read(Path path) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(path)) return entries;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(path, channel, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads records from the start of a journal until the end of the file, or a record left torn by a crash: one cut
+     * short by the end of the file, or followed by nothing but the zeros a file system can leave where a write never
+     * landed
+     * @param path The journal file, for error messages : Path
+     * @param channel The journal : FileChannel
+     * @param entries Where to put the orders read : List
+     * @return Where the last whole record ends : long
+     * @throws IOException if it can't be read, or a record fails its checksum with more of the journal after it
+     */
+    private static long scan(Path path, FileChannel channel, List<Entry> entries) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt(0);
+            if (length >= 0 && length <= MAX_PAYLOAD_BYTES && position + RECORD_HEADER_BYTES + length > size) break; // cut short
+            Entry entry = null;
+            if (length >= 0 && length <= MAX_PAYLOAD_BYTES) {
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, position + RECORD_HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                try {
+                    if ((int) crc.getValue() == header.getInt(Integer.BYTES)) entry = new Entry(payload.flip());
+                } catch (RuntimeException e) { // checksum matched but the payload doesn't parse: not one of ours
+                    entry = null;
+                }
+            }
+            if (entry == null) {
+                if (zeros(channel, position, size)) break;
+                throw new IOException(path + " is damaged at byte " + position + ", after " + entries.size()
+                        + " orders, with more after it");
+            }
+            entries.add(entry);
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    /**
+     * @param channel The journal : FileChannel
+     * @param from Where to start looking : long
+     * @param size The length of the journal : long
+     * @return true if everything from there to the end of the journal is zero : boolean
+     * @throws IOException if it can't be read
+     */
+    private static boolean zeros(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (long position = from; position < size; position += buffer.limit()) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+            readFully(channel, buffer, position);
+            for (int i = 0; i < buffer.limit(); i++) if (buffer.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of journal");
+        }
+    }
+
+    /**
+     * Places an order that isn't for a particular size
+     * @param geek : A geek object : The person who made the order
+     * @param garment : A Garment object : The garment being ordered
+     * @param message : String : The message included with the order
+     * @return The order's sequence number once it's safely in the journal : CompletableFuture
+     */
+    public CompletableFuture<Long> append(Geek geek, Garment garment, String message) {
+        return append(geek, garment, null, message);
+    }
+
+    /**
+     * Places an order. It's encoded and queued straight away, and written by the journal's own thread, so this
+     * never waits for the disk.
+     * @param geek : A geek object : The person who made the order
+     * @param garment : A Garment object : The garment being ordered
+     * @param size : The size ordered, or null : Size
+     * @param message : String : The message included with the order
+     * @return The order's sequence number once it's safely in the journal, or the IOException that stopped it
+     * getting there : CompletableFuture
+     */
+    public CompletableFuture<Long> append(Geek geek, Garment garment, Size size, String message) {
+        byte[][] strings = {utf8(geek.getName()), utf8(geek.getEmail()), utf8(garment.getName()), utf8(message)};
+        int length = 3 * Long.BYTES + (size == null ? 0 : 1);
+        for (byte[] string : strings) length += Integer.BYTES + string.length;
+        if (length > MAX_PAYLOAD_BYTES) return CompletableFuture.failedFuture(new IllegalArgumentException("Order is too big"));
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+        record.position(RECORD_HEADER_BYTES);
+        Pending pending;
+        synchronized (this) { // sequence numbers go into the queue in order
+            if (closed) return CompletableFuture.failedFuture(new IllegalStateException("Order journal is closed"));
+            record.putLong(nextSequence).putLong(System.currentTimeMillis()).putLong(garment.getProductCode());
+            for (byte[] string : strings) record.putInt(string.length).put(string);
+            if (size != null) record.put((byte) size.ordinal());
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), RECORD_HEADER_BYTES, length);
+            record.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue()).flip();
+            pending = new Pending(nextSequence++, record);
+            queue.add(pending);
+        }
+        return pending.written;
+    }
+
+    /**
+     * The writer thread: appends whatever orders have queued up in one go, then forces them to disk if the policy
+     * says so, until the journal is closed
+     */
+    private void writeQueued() {
+        List<Pending> unsynced = new ArrayList<>(); // written, but not yet forced to disk
+        long oldestUnsynced = 0; // when the first of them was written
+        List<Pending> batch = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                Pending first = unsynced.isEmpty() || policy.maxNanos == Long.MAX_VALUE ? queue.take()
+                        : queue.poll(oldestUnsynced + policy.maxNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (first != null) batch.add(first);
+                queue.drainTo(batch);
+            } catch (InterruptedException e) {
+                closing = true; // only close() should stop us, but don't lose what's been written
+            }
+            closing |= batch.remove(CLOSE);
+            try {
+                write(batch);
+                if (unsynced.isEmpty()) oldestUnsynced = System.nanoTime();
+                unsynced.addAll(batch);
+                batch.clear();
+                if (!unsynced.isEmpty() && (closing || !policy.forces()
+                        || policy.due(unsynced.size(), System.nanoTime() - oldestUnsynced))) {
+                    if (closing || policy.forces()) channel.force(false);
+                    for (Pending pending : unsynced) pending.written.complete(pending.sequence);
+                    unsynced.clear();
+                }
+            } catch (IOException e) {
+                for (Pending pending : unsynced) pending.written.completeExceptionally(e);
+                for (Pending pending : batch) pending.written.completeExceptionally(e);
+                unsynced.clear();
+                batch.clear();
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // everything written has already been forced, or failed
+        }
+    }
+
+    /**
+     * Appends a batch of records, with as few writes as the operating system allows. If the write fails part way,
+     * the journal is cut back to where it was, so a torn record can't end up in the middle of it.
+     * @param batch The orders to write : List
+     * @throws IOException if they can't be written
+     */
+    private void write(List<Pending> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        ByteBuffer[] records = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < records.length; i++) {
+            records[i] = batch.get(i).record;
+            remaining += records[i].remaining();
+        }
+        long start = channel.position();
+        try {
+            while (remaining > 0) remaining -= channel.write(records);
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException ignored) {
+                // the next open() will cut it off instead
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return The journal file : Path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Stops taking orders, waits for every order already placed to be written and forced to disk, and closes the
+     * file. Orders placed after this fail with an IllegalStateException.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            queue.add(CLOSE);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
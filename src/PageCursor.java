@@ -0,0 +1,79 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Where a page of search results ended: the sort key's value for the last garment on it, and its product code. The
+ * next page starts with the first garment after that in the sort order, so pages carry on correctly even if the
+ * inventory changes between them: nothing is shown twice, and nothing that stayed put is skipped.
+ * <p>
+ * It is handed out as an opaque string, e.g. to an API client, and read back in with parse().
+ */
+public class PageCursor {
+    /*------------------FIELDS------*/
+    private final SortKey sortKey;
+    private final double price;
+    private final String name;
+    private final long productCode;
+
+    /**
+     * Constructor for PageCursor
+     * @param sortKey The order the pages are in : SortKey
+     * @param garment The last garment on the page : Garment
+     */
+    public PageCursor(SortKey sortKey, Garment garment) {
+        this(sortKey, garment.getPrice(), garment.getName(), garment.getProductCode());
+    }
+
+    private PageCursor(SortKey sortKey, double price, String name, long productCode) {
+        this.sortKey = sortKey;
+        this.price = price;
+        this.name = name;
+        this.productCode = productCode;
+    }
+
+    /**
+     * Reads a cursor back in from its string form
+     * @param cursor A cursor's toString(), or null for the first page : String
+     * @param sortKey The order the pages are in, which must be the one the cursor was made for : SortKey
+     * @return The cursor, or null if there wasn't one : PageCursor
+     * @throws IllegalArgumentException if the string isn't a cursor for that order
+     */
+    public static PageCursor parse(String cursor, SortKey sortKey) {
+        if (cursor == null || cursor.isEmpty()) return null;
+        String[] parts = cursor.split("\\.", 4);
+        try {
+            if (parts.length != 4 || SortKey.valueOf(parts[0]) != sortKey) throw new IllegalArgumentException();
+            return new PageCursor(sortKey, Double.longBitsToDouble(Long.parseUnsignedLong(parts[1], 16)),
+                    new String(Base64.getUrlDecoder().decode(parts[3]), StandardCharsets.UTF_8), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) { // covers NumberFormatException and bad Base64 too
+            throw new IllegalArgumentException("\"" + cursor + "\" isn't a cursor for results sorted by " + sortKey.name());
+        }
+    }
+
+    /**
+     * @param price A garment's price : double
+     * @param name A garment's name, which is only needed when sorting by name : String
+     * @param productCode A garment's product code : long
+     * @return true if the garment comes after the cursor, so belongs on a later page : boolean
+     */
+    public boolean isBefore(double price, String name, long productCode) {
+        return sortKey.compare(this.price, this.name, this.productCode, price, name, productCode) < 0;
+    }
+
+    /**
+     * @return The price of the last garment on the page : double
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * @return The cursor as a string that parse() reads back : String
+     */
+    @Override
+    public String toString() {
+        String encodedName = sortKey == SortKey.NAME
+                ? Base64.getUrlEncoder().withoutPadding().encodeToString(name.getBytes(StandardCharsets.UTF_8)) : "";
+        return sortKey.name() + "." + Long.toHexString(Double.doubleToLongBits(price)) + "." + productCode + "." + encodedName;
+    }
+}
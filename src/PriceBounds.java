@@ -0,0 +1,63 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+public class PriceBounds {
+    /*------------------FIELDS------*/
+    private final TreeMap<Double, Integer> priceCounts = new TreeMap<>(); // how many garments have each price
+    private double minPrice = 0; // cached, so reading them never walks the tree
+    private double maxPrice = 0;
+
+    /**
+     * @return A copy of the bounds as they are now, for another thread to read. Only the bounds are copied, not the
+     * prices, so nothing must be added to or removed from the copy : PriceBounds
+     */
+    public PriceBounds freeze() {
+        PriceBounds frozen = new PriceBounds();
+        frozen.minPrice = minPrice;
+        frozen.maxPrice = maxPrice;
+        return frozen;
+    }
+
+    /**
+     * Counts one more garment at a price
+     * @param price The garment's price : double
+     */
+    public void add(double price) {
+        if (priceCounts.isEmpty() || price < minPrice) minPrice = price;
+        if (priceCounts.isEmpty() || price > maxPrice) maxPrice = price;
+        priceCounts.merge(price, 1, Integer::sum);
+    }
+
+    /**
+     * Counts one less garment at a price. Only removing the last garment at the lowest or highest price has to
+     * look up the new bound.
+     * @param price The garment's price : double
+     */
+    public void remove(double price) {
+        Integer count = priceCounts.get(price);
+        if (count == null) return; // was never added
+        if (count > 1) {
+            priceCounts.put(price, count - 1);
+            return;
+        }
+        priceCounts.remove(price);
+        Map.Entry<Double, Integer> lowest = priceCounts.firstEntry();
+        Map.Entry<Double, Integer> highest = priceCounts.lastEntry();
+        minPrice = lowest == null ? 0 : lowest.getKey();
+        maxPrice = highest == null ? 0 : highest.getKey();
+    }
+
+    /**
+     * @return The lowest price counted, or 0 if there are none : double
+     */
+    public double getMinPrice() {
+        return minPrice;
+    }
+
+    /**
+     * @return The highest price counted, or 0 if there are none : double
+     */
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+}
@@ -0,0 +1,273 @@
+import java.util.Arrays;
+
+public class PriceIndex {
+    /*------------------FIELDS------*/
+    private static final double[] NO_PRICES = new double[0];
+    private static final int[] NO_ORDINALS = new int[0];
+    private static final int MIN_TAIL = 256; // the tail can always be this long before it's merged in
+    private double[] prices = new double[16]; // prices in ascending order (once sorted)
+    private int[] ordinals = new int[16]; // the garment ordinal belonging to the price at the same position
+    private int size = 0;
+    private int sortedSize = 0; // everything before this position is in price order, everything after is not yet
+    private boolean shared = false; // a frozen view is reading the arrays, so they must be copied before sorting
+    // a sorted copy of the entries just after sortedSize, as of the last freeze(), so a freeze needn't merge every
+    // new entry into the whole index; each freeze makes new tail arrays, so views can share them
+    private double[] tailPrices = NO_PRICES;
+    private int[] tailOrdinals = NO_ORDINALS;
+    private int[] tailPositions = NO_ORDINALS; // where each tail entry comes in price order, counting both
+
+    /**
+     * Constructor for an empty PriceIndex
+     */
+    public PriceIndex() {
+    }
+
+    /**
+     * Constructor for a frozen view, see freeze()
+     * @param prices The prices, sorted up to sortedSize : double[]
+     * @param ordinals The ordinals in the same order : int[]
+     * @param sortedSize The number of sorted entries in use : int
+     * @param tailPrices The sorted prices of the entries after them : double[]
+     * @param tailOrdinals Their ordinals in the same order : int[]
+     * @param tailPositions Where each of them comes in price order : int[]
+     */
+    private PriceIndex(double[] prices, int[] ordinals, int sortedSize, double[] tailPrices, int[] tailOrdinals,
+                       int[] tailPositions) {
+        this.prices = prices;
+        this.ordinals = ordinals;
+        this.size = sortedSize + tailPrices.length;
+        this.sortedSize = sortedSize;
+        this.tailPrices = tailPrices;
+        this.tailOrdinals = tailOrdinals;
+        this.tailPositions = tailPositions;
+    }
+
+    /**
+     * Sorts the index and makes a view of it for another thread to read. The view shares the sorted arrays; the next
+     * sort that would rearrange them copies them first, and appending only writes past the end the view can see.
+     * Entries added since the arrays were last sorted are sorted into a tail of their own instead, as long as there
+     * are few of them, so that publishing one change at a time doesn't copy and merge the whole index every time.
+     * @return The view, which nothing must be added to : PriceIndex
+     */
+    public PriceIndex freeze() {
+        if (size - sortedSize > Math.max(MIN_TAIL, (int) Math.sqrt(size))) sort();
+        else sortTail();
+        shared = true;
+        return new PriceIndex(prices, ordinals, sortedSize, tailPrices, tailOrdinals, tailPositions);
+    }
+
+    /**
+     * Adds a garment's price to the index. New entries are only appended here, and are sorted into place the next
+     * time the index is queried, so that loading a whole inventory doesn't shuffle the arrays once per garment.
+     * @param price The garment's price : double
+     * @param ordinal The garment's ordinal in the inventory : int
+     */
+    public void add(double price, int ordinal) {
+        if (size == prices.length) { // out of room, double the arrays
+            prices = Arrays.copyOf(prices, size * 2);
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+        }
+        prices[size] = price;
+        ordinals[size] = ordinal;
+        size++;
+    }
+
+    /**
+     * @return The number of prices in the index : int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Binary searches for the first position holding a price of at least minPrice
+     * @param minPrice The lowest price we are interested in : double
+     * @return position in price order, or size() if every price is below minPrice : int
+     */
+    public int firstAtLeast(double minPrice) {
+        sortAppended();
+        return firstAtLeast(prices, sortedSize, minPrice) + firstAtLeast(tailPrices, tailPrices.length, minPrice);
+    }
+
+    /**
+     * Binary searches for the first position holding a price above maxPrice
+     * @param maxPrice The highest price we are interested in : double
+     * @return position in price order, or size() if no price is above maxPrice : int
+     */
+    public int firstAbove(double maxPrice) {
+        sortAppended();
+        return firstAbove(prices, sortedSize, maxPrice) + firstAbove(tailPrices, tailPrices.length, maxPrice);
+    }
+
+    /**
+     * @param position A position in price order, as returned by firstAtLeast or firstAbove : int
+     * @return The ordinal of the garment at that position : int
+     */
+    public int ordinalAt(int position) {
+        sortAppended();
+        int before = tailBefore(position);
+        if (before < tailPositions.length && tailPositions[before] == position) return tailOrdinals[before];
+        return ordinals[position - before];
+    }
+
+    /**
+     * @param position A position in price order : int
+     * @return The price at that position : double
+     */
+    public double priceAt(int position) {
+        sortAppended();
+        int before = tailBefore(position);
+        if (before < tailPositions.length && tailPositions[before] == position) return tailPrices[before];
+        return prices[position - before];
+    }
+
+    /**
+     * @param position A position in price order : int
+     * @return The number of tail entries that come before it : int
+     */
+    private int tailBefore(int position) {
+        int low = 0, high = tailPositions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tailPositions[mid] < position) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Binary searches the first entries of some sorted prices for the first holding a price of at least minPrice
+     * @param prices The prices : double[]
+     * @param size The number of them in use : int
+     * @param minPrice The lowest price we are interested in : double
+     * @return position, or size if every price is below minPrice : int
+     */
+    private static int firstAtLeast(double[] prices, int size, double minPrice) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < minPrice) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Binary searches the first entries of some sorted prices for the first holding a price above maxPrice
+     * @param prices The prices : double[]
+     * @param size The number of them in use : int
+     * @param maxPrice The highest price we are interested in : double
+     * @return position, or size if no price is above maxPrice : int
+     */
+    private static int firstAbove(double[] prices, int size, double maxPrice) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] <= maxPrice) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Sorts everything if anything has been added since the last freeze, which only the writer's own queries see
+     */
+    private void sortAppended() {
+        if (size != sortedSize + tailPrices.length) sort();
+    }
+
+    /**
+     * Sorts any newly appended entries and merges them in with the already sorted ones. Equal prices keep the order
+     * they were added in, so results come back in the same order every time.
+     */
+    private void sort() {
+        if (sortedSize == size) return; // nothing new since last time
+        if (shared) { // a frozen view still reads these
+            prices = prices.clone();
+            ordinals = ordinals.clone();
+            shared = false;
+        }
+        double[] priceBuffer = new double[size];
+        int[] ordinalBuffer = new int[size];
+        mergeSort(prices, ordinals, sortedSize, size, priceBuffer, ordinalBuffer);
+        merge(prices, ordinals, 0, sortedSize, size, priceBuffer, ordinalBuffer);
+        sortedSize = size;
+        tailPrices = NO_PRICES;
+        tailOrdinals = NO_ORDINALS;
+        tailPositions = NO_ORDINALS;
+    }
+
+    /**
+     * Sorts the entries appended since the last freeze into new tail arrays, merged with the old tail's, leaving the
+     * sorted arrays as they are. Equal prices come in the same order sort() would put them in.
+     */
+    private void sortTail() {
+        int tailSize = size - sortedSize, sortedTail = tailPrices.length;
+        if (tailSize == sortedTail) return; // nothing new since last time
+        double[] newPrices = Arrays.copyOf(tailPrices, tailSize);
+        int[] newOrdinals = Arrays.copyOf(tailOrdinals, tailSize);
+        System.arraycopy(prices, sortedSize + sortedTail, newPrices, sortedTail, tailSize - sortedTail);
+        System.arraycopy(ordinals, sortedSize + sortedTail, newOrdinals, sortedTail, tailSize - sortedTail);
+        double[] priceBuffer = new double[tailSize];
+        int[] ordinalBuffer = new int[tailSize];
+        mergeSort(newPrices, newOrdinals, sortedTail, tailSize, priceBuffer, ordinalBuffer);
+        merge(newPrices, newOrdinals, 0, sortedTail, tailSize, priceBuffer, ordinalBuffer);
+        int[] newPositions = new int[tailSize];
+        for (int i = 0; i < tailSize; i++) { // after every sorted entry with the same price, as they were added first
+            newPositions[i] = i + firstAbove(prices, sortedSize, newPrices[i]);
+        }
+        tailPrices = newPrices;
+        tailOrdinals = newOrdinals;
+        tailPositions = newPositions;
+    }
+
+    /**
+     * Recursive merge sort on a range of both arrays
+     * @param prices The prices : double[]
+     * @param ordinals The ordinals in the same order : int[]
+     * @param from First position of the range : int
+     * @param to Position after the last position of the range : int
+     * @param priceBuffer Scratch space at least as long as the range : double[]
+     * @param ordinalBuffer Scratch space at least as long as the range : int[]
+     */
+    private static void mergeSort(double[] prices, int[] ordinals, int from, int to, double[] priceBuffer,
+                                  int[] ordinalBuffer) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(prices, ordinals, from, mid, priceBuffer, ordinalBuffer);
+        mergeSort(prices, ordinals, mid, to, priceBuffer, ordinalBuffer);
+        merge(prices, ordinals, from, mid, to, priceBuffer, ordinalBuffer);
+    }
+
+    /**
+     * Merges the two sorted runs [from, mid) and [mid, to), taking from the left run first on equal prices
+     * @param prices The prices : double[]
+     * @param ordinals The ordinals in the same order : int[]
+     * @param from Start of the left run : int
+     * @param mid Start of the right run : int
+     * @param to End of the right run : int
+     * @param priceBuffer Scratch space at least as long as the range : double[]
+     * @param ordinalBuffer Scratch space at least as long as the range : int[]
+     */
+    private static void merge(double[] prices, int[] ordinals, int from, int mid, int to, double[] priceBuffer,
+                              int[] ordinalBuffer) {
+        if (from == mid || mid == to || prices[mid - 1] <= prices[mid]) return; // already in order
+        int left = from, right = mid, out = 0;
+        while (left < mid && right < to) {
+            if (prices[right] < prices[left]) {
+                priceBuffer[out] = prices[right];
+                ordinalBuffer[out++] = ordinals[right++];
+            } else {
+                priceBuffer[out] = prices[left];
+                ordinalBuffer[out++] = ordinals[left++];
+            }
+        }
+        while (left < mid) {
+            priceBuffer[out] = prices[left];
+            ordinalBuffer[out++] = ordinals[left++];
+        }
+        // anything left over on the right is already where it belongs
+        System.arraycopy(priceBuffer, 0, prices, from, out);
+        System.arraycopy(ordinalBuffer, 0, ordinals, from, out);
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.Map;
+
+/**
+ * Finds a garment's ordinal (or record number) by its product code with a binary search, rather than a scan. The
+ * codes are kept sorted in a pair of arrays, and a version of an Inventory shares them with the versions before it:
+ * what has changed since they were sorted is kept in a small map alongside, checked first. Nothing in an index ever
+ * changes once it's made, so any number of threads can read it.
+ */
+public class ProductCodeIndex {
+    /*------------------FIELDS------*/
+    public static final int ABSENT = -1; // no garment has the product code
+    public static final ProductCodeIndex EMPTY = sorted(new long[0], new int[0]);
+    private final long[] codes; // in ascending order
+    private final int[] ordinals; // the ordinal belonging to the code at the same position
+    private final Map<Long, Integer> changes; // code -> its ordinal now, or ABSENT, for codes changed since the sort
+
+    /**
+     * Constructor for ProductCodeIndex, only called by sorted() and withChanges()
+     */
+    private ProductCodeIndex(long[] codes, int[] ordinals, Map<Long, Integer> changes) {
+        this.codes = codes;
+        this.ordinals = ordinals;
+        this.changes = changes;
+    }
+
+    /**
+     * Makes an index of some garments, sorting the arrays in place
+     * @param codes Each garment's product code, all different, which the index takes over : long[]
+     * @param ordinals Each garment's ordinal, in the same order, which the index takes over : int[]
+     * @return The index : ProductCodeIndex
+     */
+    public static ProductCodeIndex sorted(long[] codes, int[] ordinals) {
+        mergeSort(codes, ordinals, 0, codes.length, new long[codes.length], new int[codes.length]);
+        return new ProductCodeIndex(codes, ordinals, Map.of());
+    }
+
+    /**
+     * Makes an index sharing this one's sorted arrays, with different changes since they were sorted
+     * @param changes Product code -> its ordinal, or ABSENT if it's gone, for every code changed since this index was
+     * sorted; copied, so the caller can carry on changing it : Map
+     * @return The index : ProductCodeIndex
+     */
+    public ProductCodeIndex withChanges(Map<Long, Integer> changes) {
+        return changes.isEmpty() && this.changes.isEmpty() ? this
+                : new ProductCodeIndex(codes, ordinals, Map.copyOf(changes));
+    }
+
+    /**
+     * @param productCode A garment's product code : long
+     * @return The garment's ordinal, or ABSENT if no garment has that product code : int
+     */
+    public int find(long productCode) {
+        Integer changed = changes.get(productCode);
+        if (changed != null) return changed;
+        int low = 0, high = codes.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (codes[mid] < productCode) low = mid + 1;
+            else if (codes[mid] > productCode) high = mid - 1;
+            else return ordinals[mid];
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Recursive merge sort on a range of both arrays, by code
+     * @param codes The codes : long[]
+     * @param ordinals The ordinals in the same order : int[]
+     * @param from First position of the range : int
+     * @param to Position after the last position of the range : int
+     * @param codeBuffer Scratch space at least as long as the range : long[]
+     * @param ordinalBuffer Scratch space at least as long as the range : int[]
+     */
+    private static void mergeSort(long[] codes, int[] ordinals, int from, int to, long[] codeBuffer, int[] ordinalBuffer) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(codes, ordinals, from, mid, codeBuffer, ordinalBuffer);
+        mergeSort(codes, ordinals, mid, to, codeBuffer, ordinalBuffer);
+        if (codes[mid - 1] <= codes[mid]) return; // already in order, as codes read from a file often are
+        int left = from, right = mid, out = 0;
+        while (left < mid && right < to) {
+            if (codes[right] < codes[left]) {
+                codeBuffer[out] = codes[right];
+                ordinalBuffer[out++] = ordinals[right++];
+            } else {
+                codeBuffer[out] = codes[left];
+                ordinalBuffer[out++] = ordinals[left++];
+            }
+        }
+        while (left < mid) {
+            codeBuffer[out] = codes[left];
+            ordinalBuffer[out++] = ordinals[left++];
+        }
+        // anything left over on the right is already where it belongs
+        System.arraycopy(codeBuffer, 0, codes, from, out);
+        System.arraycopy(ordinalBuffer, 0, ordinals, from, out);
+    }
+}
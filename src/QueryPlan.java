@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class QueryPlan {
+    /*------------------FIELDS------*/
+    private final List<Filter> steps; // the order the criteria are checked in, null standing for the price range
+    private final int[] estimates; // estimated candidates left after each step
+    private final int[] actuals; // actual candidates left after each step, filled in while the query runs
+    private final int garmentCount;
+    private final double minPrice;
+    private final double maxPrice;
+    private boolean garmentByGarment = false; // true if each garment was checked in turn instead of using bitmaps
+
+    /**
+     * Constructor for QueryPlan, used by QueryPlanner once it has decided on an order
+     * @param steps The criteria in the order they should be checked, null standing for the price range : List
+     * @param estimates The estimated number of garments that pass each criterion alone : int[]
+     * @param garmentCount The number of garments in the inventory when the plan was made : int
+     * @param minPrice The query's minimum price : double
+     * @param maxPrice The query's maximum price : double
+     */
+    public QueryPlan(List<Filter> steps, int[] estimates, int garmentCount, double minPrice, double maxPrice) {
+        this.steps = new ArrayList<>(steps);
+        this.estimates = estimates.clone();
+        this.actuals = new int[steps.size()];
+        this.garmentCount = garmentCount;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    /**
+     * @return The criteria in the order they are checked, null standing for the price range : List
+     */
+    public List<Filter> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * @param step Position in the plan : int
+     * @return The Filter checked at that step, or null for the price range : Filter
+     */
+    public Filter getStep(int step) {
+        return steps.get(step);
+    }
+
+    /**
+     * @return The number of steps in the plan : int
+     */
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * @param step Position in the plan : int
+     * @return The estimated number of garments passing that step's criterion : int
+     */
+    public int getEstimate(int step) {
+        return estimates[step];
+    }
+
+    /**
+     * Records how many candidates were really left after a step
+     * @param step Position in the plan : int
+     * @param candidates The number of candidates left : int
+     */
+    public void setActual(int step, int candidates) {
+        actuals[step] = candidates;
+    }
+
+    /**
+     * Records that the plan was run one garment at a time (starting from the price range) instead of with bitmaps
+     * @param garmentByGarment true if checked one garment at a time : boolean
+     */
+    public void setGarmentByGarment(boolean garmentByGarment) {
+        this.garmentByGarment = garmentByGarment;
+    }
+
+    /**
+     * Method to return a String describing the chosen order, with estimated and actual candidate counts at each step
+     * @return Description of the plan : String
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder("Query plan over ").append(garmentCount).append(" garments, ")
+                .append(garmentByGarment ? "checking each garment in the price range in turn:" : "intersecting bitmaps:");
+        for (int step = 0; step < steps.size(); step++) {
+            String criterion = steps.get(step) == null ? "Price $" + minPrice + " - $" + maxPrice : steps.get(step).toString();
+            description.append("\n").append(step + 1).append(". ").append(criterion)
+                    .append(": estimated ").append(estimates[step])
+                    .append(", actual ").append(actuals[step]).append(" candidates left");
+        }
+        return description.toString();
+    }
+}
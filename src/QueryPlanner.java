@@ -0,0 +1,151 @@
+import java.util.*;
+
+public class QueryPlanner {
+    /*------------------FIELDS------*/
+    private static final double PRICE_BUCKET_WIDTH = 5.0; // dollars covered by each bar of the price histogram
+    private static final Filter[] FILTERS = Filter.values();
+    private int garmentCount = 0;
+    private final int[] presenceCounts = new int[FILTERS.length]; // garments that have each Filter at all
+    private final int[][] valueCounts = new int[FILTERS.length][]; // garments with each value id, per Filter
+    private int[] priceBuckets = new int[32]; // price histogram
+
+    /**
+     * Constructor for QueryPlanner, sizing the value counts for each enum valued Filter
+     */
+    public QueryPlanner() {
+        for (Filter filter : FILTERS) {
+            Class<? extends Enum<?>> type = filter == Filter.SIZE ? Size.class : GarmentColumns.enumType(filter);
+            valueCounts[filter.ordinal()] = new int[type == null ? 16 : type.getEnumConstants().length];
+        }
+    }
+
+    /**
+     * Constructor for a copy of another planner's statistics, see freeze()
+     * @param source The planner to copy : QueryPlanner
+     */
+    private QueryPlanner(QueryPlanner source) {
+        garmentCount = source.garmentCount;
+        System.arraycopy(source.presenceCounts, 0, presenceCounts, 0, presenceCounts.length);
+        for (int i = 0; i < valueCounts.length; i++) valueCounts[i] = source.valueCounts[i].clone();
+        priceBuckets = source.priceBuckets.clone();
+    }
+
+    /**
+     * @return A copy of the statistics as they are now, for another thread to plan with : QueryPlanner
+     */
+    public QueryPlanner freeze() {
+        return new QueryPlanner(this);
+    }
+
+    /**
+     * Updates the statistics for a garment that was just added to the columns, or is about to be removed from them
+     * @param columns The columns the garment is in : GarmentColumns
+     * @param ordinal The garment's ordinal : int
+     * @param change 1 for an added garment, -1 for a removed one : int
+     */
+    public void count(GarmentColumns columns, int ordinal, int change) {
+        garmentCount += change;
+        int bucket = priceBucket(columns.getPrice(ordinal));
+        if (bucket >= priceBuckets.length) priceBuckets = Arrays.copyOf(priceBuckets, Math.max(bucket + 1, priceBuckets.length * 2));
+        priceBuckets[bucket] += change;
+        for (Filter filter : FILTERS) {
+            int[] counts = valueCounts[filter.ordinal()];
+            if (filter == Filter.SIZE) {
+                short sizeMask = columns.getSizeMask(ordinal);
+                if (sizeMask == GarmentColumns.ABSENT) continue;
+                presenceCounts[filter.ordinal()] += change;
+                for (int s = 0; s < counts.length; s++) if ((sizeMask & (1 << s)) != 0) counts[s] += change;
+            } else {
+                int valueId = columns.getValueId(filter, ordinal);
+                if (valueId == GarmentColumns.ABSENT) continue;
+                presenceCounts[filter.ordinal()] += change;
+                if (valueId >= counts.length) { // only brands can outgrow their array
+                    counts = Arrays.copyOf(counts, Math.max(valueId + 1, counts.length * 2));
+                    valueCounts[filter.ordinal()] = counts;
+                }
+                counts[valueId] += change;
+            }
+        }
+    }
+
+    /**
+     * @param price A garment's price : double
+     * @return The histogram bucket that price falls in : int
+     */
+    private static int priceBucket(double price) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE - 1, price / PRICE_BUCKET_WIDTH));
+    }
+
+    /**
+     * Estimates how many garments pass a single criterion: those without the Filter, plus those with any of the
+     * criterion's values
+     * @param filter The Filter the criterion is on : Filter
+     * @param dreamGarment The query : GarmentSpecs
+     * @return estimated number of garments passing : int
+     */
+    public int estimate(Filter filter, GarmentSpecs dreamGarment) {
+        int[] counts = valueCounts[filter.ordinal()];
+        long withValue = 0;
+        if (filter == Filter.BRAND) {
+            for (int brandId : dreamGarment.getBrandIds()) if (brandId < counts.length) withValue += counts[brandId];
+        } else {
+            long valueMask = dreamGarment.getValueMask(filter);
+            while (valueMask != 0) {
+                int valueId = Long.numberOfTrailingZeros(valueMask);
+                valueMask &= valueMask - 1;
+                if (valueId < counts.length) withValue += counts[valueId];
+            }
+        }
+        // a garment with several of the sizes is counted once per size, so cap at the garments that have the Filter
+        withValue = Math.min(withValue, presenceCounts[filter.ordinal()]);
+        return (int) (garmentCount - presenceCounts[filter.ordinal()] + withValue);
+    }
+
+    /**
+     * Estimates how many garments fall in a price range from the histogram, assuming prices are spread evenly
+     * within each bucket
+     * @param minPrice The lowest price : double
+     * @param maxPrice The highest price : double
+     * @return estimated number of garments in the range : int
+     */
+    public int estimatePriceRange(double minPrice, double maxPrice) {
+        if (maxPrice < minPrice || maxPrice < 0) return 0;
+        double estimate = 0;
+        int last = Math.min(priceBucket(maxPrice), priceBuckets.length - 1);
+        for (int bucket = priceBucket(minPrice); bucket <= last; bucket++) {
+            double bucketStart = bucket * PRICE_BUCKET_WIDTH;
+            double covered = Math.min(maxPrice, bucketStart + PRICE_BUCKET_WIDTH) - Math.max(minPrice, bucketStart);
+            if (bucket == 0 && minPrice <= 0) covered = Math.min(maxPrice, PRICE_BUCKET_WIDTH); // bucket 0 holds anything below 0 too
+            estimate += priceBuckets[bucket] * Math.max(0, Math.min(1, covered / PRICE_BUCKET_WIDTH));
+        }
+        return (int) Math.ceil(estimate);
+    }
+
+    /**
+     * Puts a query's criteria in order, most selective (fewest estimated garments) first. The price range is always
+     * one of the steps.
+     * @param dreamGarment The query : GarmentSpecs
+     * @return The plan to run the query with : QueryPlan
+     */
+    public QueryPlan plan(GarmentSpecs dreamGarment) {
+        List<Filter> steps = new ArrayList<>();
+        List<Integer> estimates = new ArrayList<>();
+        steps.add(null); // the price range
+        estimates.add(estimatePriceRange(dreamGarment.getMinPrice(), dreamGarment.getMaxPrice()));
+        for (Filter filter : FILTERS) {
+            if (!dreamGarment.hasFilter(filter)) continue;
+            steps.add(filter);
+            estimates.add(estimate(filter, dreamGarment));
+        }
+        Integer[] order = new Integer[steps.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(estimates::get)); // stable, so ties keep Filter order
+        List<Filter> orderedSteps = new ArrayList<>();
+        int[] orderedEstimates = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            orderedSteps.add(steps.get(order[i]));
+            orderedEstimates[i] = estimates.get(order[i]);
+        }
+        return new QueryPlan(orderedSteps, orderedEstimates, garmentCount, dreamGarment.getMinPrice(), dreamGarment.getMaxPrice());
+    }
+}
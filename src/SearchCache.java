@@ -0,0 +1,311 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Remembers the results of recent searches of an Inventory, so a shopper clicking Search again, or another shopper
+ * searching for the same thing, doesn't rebuild every matching Garment. Searches are keyed on GarmentSpecs, whose
+ * equals compares what is searched for rather than how it was written down.
+ * <p>
+ * The cache holds at most maxBytes of results, by an estimate of their size, dropping the least recently used first.
+ * A cached result is only thrown away when the inventory changes in a way that touches it: when a newer version is
+ * searched, the garments added, replaced or removed since the result's version are checked against its criteria, and
+ * if none of them match, the result is still right and is just brought up to the new version. Stock isn't versioned,
+ * so searches for garments in stock are never cached.
+ * <p>
+ * search is cached too, once its results have all been read. Everything else goes straight to the inventory. The
+ * cache can be shared between any number of threads.
+ */
+public class SearchCache implements GarmentCatalog {
+    /*------------------FIELDS------*/
+    private static final long GARMENT_BYTES = 320; // what a built Garment holds on to; its name is the column's
+    private static final long ENTRY_BYTES = 256; // the key, the entry and its place in the map
+    private final Inventory inventory;
+    private final long maxBytes;
+    // criteria -> what they found, least recently used first; guarded by this, as are the counters below
+    private final LinkedHashMap<GarmentSpecs, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * One cached search
+     * @param garments What it found, in order : List
+     * @param version The newest version they're known to be right for : long
+     * @param bytes The estimated size of the entry : long
+     */
+    private record Entry(List<Garment> garments, long version, long bytes) {
+    }
+
+    /**
+     * Constructor for SearchCache
+     * @param inventory The inventory to search : Inventory
+     * @param maxBytes The most the cached results should take up, estimated : long
+     */
+    public SearchCache(Inventory inventory, long maxBytes) {
+        this.inventory = inventory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Finds the garments matching the user's search criteria, from the cache if the last time they were searched for
+     * is still right for the current version
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return matchingGarments : The matching Garment objects, tagged with the current version : SearchResults
+     */
+    @Override
+    public SearchResults findMatch(GarmentSpecs dreamGarment) {
+        if (dreamGarment.isInStockOnly()) return inventory.findMatch(dreamGarment);
+        InventoryVersion now = inventory.snapshot();
+        List<Garment> cached = lookup(dreamGarment, now);
+        if (cached != null) return new SearchResults(cached, now.getVersion());
+        SearchResults found = now.findMatch(dreamGarment);
+        store(dreamGarment, new Entry(found, found.getVersion(), ENTRY_BYTES + GARMENT_BYTES * found.size()));
+        return found;
+    }
+
+    /**
+     * Searches one version of the inventory, giving the results as they're read. A search that's cached and still
+     * right for the version reads the cached results; any other builds each garment as it's read, and is cached once
+     * every result has been read.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @param now The version to search, a snapshot of this cache's inventory : InventoryVersion
+     * @return The matching garments, in order : Stream
+     */
+    public Stream<Garment> search(GarmentSpecs dreamGarment, InventoryVersion now) {
+        if (dreamGarment.isInStockOnly()) return now.search(dreamGarment);
+        List<Garment> cached = lookup(dreamGarment, now);
+        if (cached != null) return cached.stream();
+        return StreamSupport.stream(new Recording(now.search(dreamGarment).spliterator(), dreamGarment,
+                now.getVersion()), false);
+    }
+
+    /**
+     * Finds a search's cached results, if they're right for a version, counting the hit or miss. Results cached for
+     * an older version are brought up to it if nothing that's changed since could match, and dropped if something
+     * could.
+     * @param dreamGarment The criteria : GarmentSpecs
+     * @param now The version wanted : InventoryVersion
+     * @return The cached results, or null if the search has to be run : List
+     */
+    private List<Garment> lookup(GarmentSpecs dreamGarment, InventoryVersion now) {
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(dreamGarment);
+        }
+        if (cached != null && cached.version() == now.getVersion()) {
+            count(true);
+            return cached.garments();
+        }
+        if (cached != null && cached.version() < now.getVersion()) {
+            BitSet changed = inventory.changedBetween(cached.version(), now.getVersion());
+            if (changed != null && !now.anyMatches(changed, dreamGarment)) { // nothing it could find has changed
+                store(dreamGarment, new Entry(cached.garments(), now.getVersion(), cached.bytes()));
+                count(true);
+                return cached.garments();
+            }
+            synchronized (this) {
+                if (entries.get(dreamGarment) == cached) {
+                    entries.remove(dreamGarment);
+                    bytes -= cached.bytes();
+                    invalidations++;
+                }
+            }
+        }
+        count(false);
+        return null;
+    }
+
+    private synchronized void count(boolean hit) {
+        if (hit) hits++;
+        else misses++;
+    }
+
+    /**
+     * Caches a search's result, unless a newer one is cached already or it's too big to be worth it, then drops the
+     * least recently used results until the cache is back under its limit
+     * @param dreamGarment The criteria : GarmentSpecs
+     * @param entry What they found : Entry
+     */
+    private synchronized void store(GarmentSpecs dreamGarment, Entry entry) {
+        if (entry.bytes() > maxBytes / 2) return; // one search shouldn't clear out everything else
+        Entry previous = entries.get(dreamGarment);
+        if (previous != null && previous.version() > entry.version()) return; // another thread got a newer one in first
+        entries.put(dreamGarment, entry);
+        bytes += entry.bytes() - (previous == null ? 0 : previous.bytes());
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Forgets every cached result, leaving the counters alone
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return Searches answered from the cache : long
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Searches that had to be run : long
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Results dropped to make room : long
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Results dropped because a change to the inventory touched them : long
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return The estimated size of the cached results : long
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The counters, for logging : String
+     */
+    @Override
+    public synchronized String toString() {
+        return "SearchCache: " + entries.size() + " searches, " + bytes / 1024 + "KB of " + maxBytes / 1024
+                + "KB, hits " + hits + ", misses " + misses + ", evictions " + evictions
+                + ", invalidations " + invalidations;
+    }
+
+    /**
+     * @return The inventory the cache searches : Inventory
+     */
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    @Override
+    public Set<String> getAllBrands() {
+        return inventory.getAllBrands();
+    }
+
+    @Override
+    public int getBrandCount(String brand) {
+        return inventory.getBrandCount(brand);
+    }
+
+    @Override
+    public double findMaxPrice() {
+        return inventory.findMaxPrice();
+    }
+
+    @Override
+    public double findMinPrice() {
+        return inventory.findMinPrice();
+    }
+
+    @Override
+    public double findMaxPrice(GarmentType type) {
+        return inventory.findMaxPrice(type);
+    }
+
+    @Override
+    public double findMinPrice(GarmentType type) {
+        return inventory.findMinPrice(type);
+    }
+
+    @Override
+    public Garment findGarment(long productCode) {
+        return inventory.findGarment(productCode);
+    }
+
+    @Override
+    public SearchPage findPage(GarmentSpecs dreamGarment, SortKey sortKey, int limit, PageCursor cursor) {
+        return inventory.findPage(dreamGarment, sortKey, limit, cursor);
+    }
+
+    @Override
+    public Stream<Garment> search(GarmentSpecs dreamGarment) {
+        return search(dreamGarment, inventory.snapshot());
+    }
+
+    @Override
+    public long count(GarmentSpecs dreamGarment) {
+        return inventory.count(dreamGarment);
+    }
+
+    /**
+     * Passes on a search's results as they're read, keeping them, and caches them once the last has been read. A
+     * search that's given up on part way, or that has found too many to be worth caching, isn't cached. It is read
+     * in order on one thread, so it never splits.
+     */
+    private class Recording implements Spliterator<Garment> {
+        private final Spliterator<Garment> found;
+        private final GarmentSpecs dreamGarment;
+        private final long version;
+        private List<Garment> read = new ArrayList<>(); // null once there are too many, or they've been cached
+
+        Recording(Spliterator<Garment> found, GarmentSpecs dreamGarment, long version) {
+            this.found = found;
+            this.dreamGarment = dreamGarment;
+            this.version = version;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Garment> action) {
+            if (found.tryAdvance(garment -> {
+                if (read != null && read.size() == (maxBytes / 2 - ENTRY_BYTES) / GARMENT_BYTES) read = null;
+                if (read != null) read.add(garment);
+                action.accept(garment);
+            })) return true;
+            if (read != null) {
+                store(dreamGarment, new Entry(Collections.unmodifiableList(read), version,
+                        ENTRY_BYTES + GARMENT_BYTES * read.size()));
+                read = null;
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Garment> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return found.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return found.characteristics();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.List;
+
+/**
+ * One page of sorted search results, and the cursor for the page after it
+ */
+public class SearchPage extends SearchResults {
+    /*------------------FIELDS------*/
+    private final PageCursor next;
+
+    /**
+     * Constructor for SearchPage
+     * @param garments The garments on the page, in order : List
+     * @param version The version of the catalog that was searched : long
+     * @param next Where the next page starts, or null if this is the last one : PageCursor
+     */
+    public SearchPage(List<Garment> garments, long version, PageCursor next) {
+        super(garments, version);
+        this.next = next;
+    }
+
+    /**
+     * @return The cursor to ask for the next page with, or null if this is the last page : PageCursor
+     */
+    public PageCursor getNextCursor() {
+        return next;
+    }
+
+    /**
+     * @return true if there are more results after this page : boolean
+     */
+    public boolean hasMore() {
+        return next != null;
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The garments a search found, along with the version of the catalog that found them
+ */
+public class SearchResults extends AbstractList<Garment> implements RandomAccess {
+    /*------------------FIELDS------*/
+    private final List<Garment> garments;
+    private final long version;
+
+    /**
+     * Constructor for SearchResults
+     * @param garments The matching garments, in order : List
+     * @param version The version of the catalog that was searched : long
+     */
+    public SearchResults(List<Garment> garments, long version) {
+        this.garments = garments;
+        this.version = version;
+    }
+
+    /**
+     * @return The version of the catalog that answered the search : long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public Garment get(int index) {
+        return garments.get(index);
+    }
+
+    @Override
+    public int size() {
+        return garments.size();
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * One shopper's visit: what they last searched for, what it found, and which garment they chose to order. The
+ * catalog is shared between every session, and is only ever read, so any number of sessions can search it at once
+ * without getting in each other's way. A session itself belongs to one shopper, and is used by one thread at a time
+ * (the window's event thread, or a headless client's own thread).
+ */
+public class SearchSession {
+    /*------------------FIELDS------*/
+    private final GarmentCatalog catalog;
+    private final OrderJournal orders; // shared too
+    private GarmentSpecs criteria; // null until the first search
+    private SearchResults results = new SearchResults(Collections.emptyList(), 0);
+    private List<Garment> arriving = null; // the results of a search begun with beginSearch, as they arrive
+    private Garment choice; // eventually becomes our determined Garment choice
+
+    /**
+     * Constructor for SearchSession
+     * @param catalog The garments being searched, shared with every other session : GarmentCatalog
+     * @param orders Where orders are placed, shared with every other session : OrderJournal
+     */
+    public SearchSession(GarmentCatalog catalog, OrderJournal orders) {
+        this.catalog = catalog;
+        this.orders = orders;
+    }
+
+    /**
+     * @return The garments being searched : GarmentCatalog
+     */
+    public GarmentCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Searches the catalog, remembering the criteria and what they found. Any garment chosen from earlier results
+     * is forgotten.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return The matching garments : SearchResults
+     */
+    public SearchResults search(GarmentSpecs dreamGarment) {
+        SearchResults found = catalog.findMatch(dreamGarment);
+        criteria = dreamGarment;
+        results = found;
+        arriving = null;
+        choice = null;
+        return found;
+    }
+
+    /**
+     * Begins a search whose results arrive a few at a time, remembering the criteria. The results start out empty,
+     * and grow as they're passed to addResults. The search reads one version of an inventory throughout, so results
+     * that arrive later are never from a newer version than the first.
+     * @param dreamGarment : The user's 'dream garment' : A GarmentSpecs object
+     * @return The matching garments, built as they're read, for another thread to read : Stream
+     */
+    public Stream<Garment> beginSearch(GarmentSpecs dreamGarment) {
+        InventoryVersion now = null; // the version the inventory is on now, if it is one
+        Stream<Garment> found;
+        if (catalog instanceof SearchCache cache) {
+            now = cache.getInventory().snapshot();
+            found = cache.search(dreamGarment, now); // the cached results, if they're still right
+        } else if (catalog instanceof Inventory inventory) {
+            now = inventory.snapshot();
+            found = now.search(dreamGarment);
+        } else {
+            found = catalog.search(dreamGarment);
+        }
+        arriving = new ArrayList<>();
+        criteria = dreamGarment;
+        results = new SearchResults(Collections.unmodifiableList(arriving), now == null ? 0 : now.getVersion());
+        choice = null;
+        return found;
+    }
+
+    /**
+     * Adds to the results of the search begun by beginSearch
+     * @param garments The next of its results, in order : List
+     * @throws IllegalStateException if no search has been begun since the last one run by search, or reset
+     */
+    public void addResults(List<Garment> garments) {
+        if (arriving == null) throw new IllegalStateException("No search is under way");
+        arriving.addAll(garments);
+    }
+
+    /**
+     * @return The criteria of the last search, or null if there hasn't been one : GarmentSpecs
+     */
+    public GarmentSpecs getCriteria() {
+        return criteria;
+    }
+
+    /**
+     * @return The last search's results, empty if there hasn't been one : SearchResults
+     */
+    public SearchResults getResults() {
+        return results;
+    }
+
+    /**
+     * Chooses a garment from the last search's results by its position in them, as selected in the results list
+     * @param index The garment's position in getResults() : int
+     * @return The garment chosen, or null if there's no result at that position : Garment
+     */
+    public Garment choose(int index) {
+        if (index < 0 || index >= results.size()) return null; // choosing nothing changes nothing
+        choice = results.get(index);
+        return choice;
+    }
+
+    /**
+     * @return The garment chosen to order, or null if none has been : Garment
+     */
+    public Garment getChoice() {
+        return choice;
+    }
+
+    /**
+     * Orders the chosen garment, then starts the session afresh. Stock is taken for it first, the same way
+     * GarmentServer does, and put back if the order can't be written. The order is only queued here, so this returns
+     * straight away.
+     * @param geek : A geek object : The person making the order
+     * @param size : The size ordered, or null if the garment doesn't come in sizes : Size
+     * @param message : String : The message included with the order
+     * @return The order's number once it's safely in the journal : CompletableFuture
+     * @throws IllegalStateException if no garment has been chosen, or it's sold out in that size, in which case the
+     * choice is kept so another size can be ordered
+     * @throws IllegalArgumentException if the garment doesn't come in that size, see Garment.checkOrderSize
+     */
+    public CompletableFuture<Long> order(Geek geek, Size size, String message) {
+        if (choice == null) throw new IllegalStateException("No garment has been chosen");
+        Garment garment = choice;
+        garment.checkOrderSize(size);
+        // only an Inventory counts stock; a mapped catalog takes every order, as the app always did
+        Inventory stock = size == null ? null
+                : catalog instanceof SearchCache cache ? cache.getInventory()
+                : catalog instanceof Inventory inventory ? inventory : null;
+        if (stock != null && !stock.reserve(garment.getProductCode(), size, 1)) {
+            throw new IllegalStateException("Sold out in size " + size);
+        }
+        CompletableFuture<Long> placed = orders.append(geek, garment, size, message);
+        if (stock != null) {
+            placed = placed.whenComplete((orderNumber, failure) -> {
+                if (failure != null) stock.release(garment.getProductCode(), size, 1); // it's not sold after all
+            });
+        }
+        reset();
+        return placed;
+    }
+
+    /**
+     * Forgets the last search, its results and the choice
+     */
+    public void reset() {
+        criteria = null;
+        results = new SearchResults(Collections.emptyList(), 0);
+        arriving = null;
+        choice = null;
+    }
+}
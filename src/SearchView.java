@@ -5,7 +5,10 @@ import javax.swing.event.ListSelectionListener;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
+import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 public class SearchView {
@@ -17,8 +20,11 @@ public class SearchView {
     private final String IMAGE_PANEL = "garment images";
     private JPanel inputCriteriaTypePanel; // holds our cards for us. How nice!
     private final double maxPrice;
+    private final ImageService images; // loads the garment images off the event thread, shared with every window
+    private static final int IMAGE_SIZE = 240; // the garment images are scaled down to fit a square this big
     private final JLabel feedbackMin = new JLabel(" ");
     private final JLabel feedbackMax = new JLabel(" ");
+    private Runnable criteriaListener = () -> {}; // told whenever the user changes a selection
     /*------USER INPUT FIELDS------*/
     private GarmentType inputGarmentType; // stores our selected garment type
     private Set<Size> sizes; // Set to hold all the input sizes;
@@ -38,14 +44,16 @@ public class SearchView {
      * Constructor used to initialise the search view
      * @param availableBrands : All the brand names a user can choose from - derived from inventory.txt
      * @param maxPrice : The maximum price of a garment - derived from inventory.txt
+     * @param images : Where the garment images are loaded from : ImageService
      */
-    public SearchView(Set<String> availableBrands, double maxPrice) {
+    public SearchView(Set<String> availableBrands, double maxPrice, ImageService images) {
         if (availableBrands != null) {
             this.availableBrands = new HashSet<>(availableBrands);
         } else {
             this.availableBrands = new HashSet<>();
         }
         this.maxPrice = maxPrice;
+        this.images = images;
         this.userBrands = new HashSet<>();
         this.sizes = new HashSet<>();
     }
@@ -98,7 +106,10 @@ public class SearchView {
         inputGarmentType = (GarmentType) garmentTypeJComboBox.getSelectedItem();
         // points to the ifTypeSelected method when a new value in the drop-down list is selected
         garmentTypeJComboBox.addItemListener(e -> {
-            if (e.getStateChange() == ItemEvent.SELECTED) ifTypeSelected(garmentTypeJComboBox);
+            if (e.getStateChange() == ItemEvent.SELECTED) {
+                ifTypeSelected(garmentTypeJComboBox);
+                criteriaListener.run();
+            }
         });
         // creates our JPanel object to hold the drop-down list.
         return generateJComboBoxPanel(garmentTypeJComboBox);
@@ -123,7 +134,10 @@ public class SearchView {
         // scroll pane to limit the visible size of the JList and enable scrolling
         JScrollPane scrollPane = generateJListScrollPane(selectSizes);
         // update the sizes' field if a new item is selected
-        ListSelectionListener listSelectionListener = e -> sizes = new HashSet<>(selectSizes.getSelectedValuesList());
+        ListSelectionListener listSelectionListener = e -> {
+            sizes = new HashSet<>(selectSizes.getSelectedValuesList());
+            criteriaListener.run();
+        };
         selectSizes.addListSelectionListener(listSelectionListener);
         // add the dropdown list, and some instructions to a panel then return it
         return generateJScrollPanel("Please select your preferred sizes (Mandatory)", scrollPane);
@@ -152,7 +166,10 @@ public class SearchView {
         poly.setActionCommand(Material.POLYESTER.name());
         na.setActionCommand(Material.NA.name());
         // action listener added to each button, updates the field if the user changes their selection
-        ActionListener actionListener = e -> material = Material.valueOf(materialButtonGroup.getSelection().getActionCommand().toUpperCase());
+        ActionListener actionListener = e -> {
+            material = Material.valueOf(materialButtonGroup.getSelection().getActionCommand().toUpperCase());
+            criteriaListener.run();
+        };
         cotton.addActionListener(actionListener);
         wool.addActionListener(actionListener);
         poly.addActionListener(actionListener);
@@ -201,11 +218,13 @@ public class SearchView {
             public void insertUpdate(DocumentEvent e) {
                 if(!checkMin(min)) min.requestFocus(); // if false, focus text box so user can address input
                 checkMax(max); // check that max is okay
+                criteriaListener.run();
             }
             @Override
             public void removeUpdate(DocumentEvent e) {
                 if(!checkMin(min))min.requestFocus();
                 checkMax(max); // same as above
+                criteriaListener.run();
             }
             @Override
             public void changedUpdate(DocumentEvent e) {
@@ -217,11 +236,13 @@ public class SearchView {
             public void insertUpdate(DocumentEvent e) {
                 if(!checkMax(max)) max.requestFocus();
                 checkMin(min); // make the same checks as min
+                criteriaListener.run();
             }
             @Override
             public void removeUpdate(DocumentEvent e) {
                 if(!checkMax(max))max.requestFocus();
                 checkMin(min);
+                criteriaListener.run();
             }
             @Override
             public void changedUpdate(DocumentEvent e) {
@@ -324,7 +345,10 @@ public class SearchView {
         selectBrands.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION); // allow multi-select
         JScrollPane scrollPane = generateJListScrollPane(selectBrands);
         // listSelectionListener that adds each selection to the field
-        ListSelectionListener listSelectionListener = e -> userBrands = new HashSet<>(selectBrands.getSelectedValuesList());
+        ListSelectionListener listSelectionListener = e -> {
+            userBrands = new HashSet<>(selectBrands.getSelectedValuesList());
+            criteriaListener.run();
+        };
         selectBrands.addListSelectionListener(listSelectionListener);
         // add the dropdown list, and some instructions to a panel then return it
         return generateJScrollPanel("Please select your preferred brand names (Optional)", scrollPane);
@@ -398,6 +422,7 @@ public class SearchView {
         jComboBox.addItemListener( e -> {
             if (e.getStateChange() == ItemEvent.SELECTED) {
                 hoodieStyle = (HoodieStyle) jComboBox.getSelectedItem();
+                criteriaListener.run();
             }
         });
         // create and return the JPanel containing our dropdown list and padding
@@ -420,6 +445,7 @@ public class SearchView {
         jComboBox.addItemListener( e -> {
             if (e.getStateChange() == ItemEvent.SELECTED) {
                 pocketType = (PocketType) jComboBox.getSelectedItem();
+                criteriaListener.run();
             }
         });
         // create and return the JPanel containing our dropdown list and padding
@@ -443,6 +469,7 @@ public class SearchView {
         jComboBox.addItemListener(e -> {
             if (e.getStateChange() == ItemEvent.SELECTED) {
                 neckline = (Neckline) jComboBox.getSelectedItem();
+                criteriaListener.run();
             }
         });
         // create and return the JPanel containing our dropdown list and padding
@@ -465,6 +492,7 @@ public class SearchView {
         jComboBox.addItemListener(e -> {
             if (e.getStateChange() == ItemEvent.SELECTED) {
                 sleeveType = (SleeveType) jComboBox.getSelectedItem();
+                criteriaListener.run();
             }
         });
         // create and return the JPanel containing our dropdown list and padding
@@ -522,15 +550,51 @@ public class SearchView {
      * @return JPanel object
      */
     public JPanel generateImagePanel() {
-        // load the images as JLabels
-        JLabel shirt = new JLabel(new ImageIcon("images/breakingBad_.jpg"));
-        JLabel hoodie = new JLabel(new ImageIcon("images/westworld_.jpg"));
+        // the labels are shown empty and filled in once the images are loaded, straight away after the first time
+        JLabel shirt = new JLabel();
+        JLabel hoodie = new JLabel();
+        images.show(shirt, Path.of("images/breakingBad_.jpg"), IMAGE_SIZE, IMAGE_SIZE);
+        images.show(hoodie, Path.of("images/westworld_.jpg"), IMAGE_SIZE, IMAGE_SIZE);
         // container panel to hold the images
         JPanel imagePanel = new JPanel();
         imagePanel.add(shirt);
         imagePanel.add(hoodie);
         return imagePanel;
     }
+    /*--------------------CRITERIA--------*/
+    /**
+     * Sets what to tell whenever the user changes any of their selections: a garment type, a size, a brand, a
+     * material, a price or a type specific option
+     * @param criteriaListener Called on the event thread after each change : Runnable
+     */
+    public void setCriteriaListener(Runnable criteriaListener) {
+        this.criteriaListener = criteriaListener;
+    }
+
+    /**
+     * Puts the user's selections together as search criteria, leaving out anything they haven't chosen. Nothing is
+     * checked here: a search needs a garment type and at least one size, but the criteria can be counted without.
+     * @return The criteria as they stand : GarmentSpecs
+     */
+    public GarmentSpecs toGarmentSpecs() {
+        Map<Filter, Object> criteria = new LinkedHashMap<>();
+        if (inputGarmentType != GarmentType.SELECT_TYPE) criteria.put(Filter.GARMENT_TYPE, inputGarmentType);
+        if (!userBrands.isEmpty()) { // must not be of size 1 AND only containing "NA" to go in the map
+            Set<String> brands = new HashSet<>(userBrands);
+            brands.remove("NA");
+            criteria.put(Filter.BRAND, brands);
+        }
+        if (!sizes.isEmpty()) criteria.put(Filter.SIZE, new HashSet<>(sizes));
+        if (!material.equals(Material.NA)) criteria.put(Filter.MATERIAL, material);
+        if (inputGarmentType.equals(GarmentType.T_SHIRT)) { // for all below - must not be NA to be added to the map
+            if (!neckline.equals(Neckline.NA)) criteria.put(Filter.NECKLINE, neckline);
+            if (!sleeveType.equals(SleeveType.NA)) criteria.put(Filter.SLEEVE_TYPE, sleeveType);
+        } else if (inputGarmentType.equals(GarmentType.HOODIE)) {
+            if (!hoodieStyle.equals(HoodieStyle.NA)) criteria.put(Filter.HOODIE_STYLE, hoodieStyle);
+            if (!pocketType.equals(PocketType.NA)) criteria.put(Filter.POCKET_TYPE, pocketType);
+        }
+        return new GarmentSpecs(criteria, userMinPrice, userMaxPrice);
+    }
     /*--------------------GETTERS/SETTERS--------*/
     /**
      * Getter for our selected garmentType
@@ -0,0 +1,76 @@
+import javax.swing.SwingWorker;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs a search off the event thread, handing its results to the window a chunk at a time as they're built, so the
+ * first of them are on screen as soon as they're found, however many more there are. The search stops between one
+ * garment and the next once it's cancelled, and nothing it found after that reaches the window.
+ */
+public class SearchWorker extends SwingWorker<Integer, List<Garment>> {
+    /*------------------FIELDS------*/
+    private static final int FIRST_CHUNK = 32; // a screenful, so the first results show up straight away
+    private static final int CHUNK = 1024; // after that, bigger chunks mean fewer hand-overs to the event thread
+    private final Stream<Garment> found;
+    private final Consumer<List<Garment>> onChunk;
+    private final IntConsumer onDone;
+    private final Consumer<Throwable> onFailed;
+
+    /**
+     * Constructor for SearchWorker. Call execute to start it.
+     * @param found The search's results, built as they're read, as GarmentCatalog.search gives them : Stream
+     * @param onChunk Called on the event thread with each chunk of results, in order : Consumer
+     * @param onDone Called on the event thread with the number of results, once they've all been handed over, unless
+     * the search was cancelled : IntConsumer
+     * @param onFailed Called on the event thread with what went wrong, instead of onDone, if the search failed part
+     * way : Consumer
+     */
+    public SearchWorker(Stream<Garment> found, Consumer<List<Garment>> onChunk, IntConsumer onDone,
+                        Consumer<Throwable> onFailed) {
+        this.found = found;
+        this.onChunk = onChunk;
+        this.onDone = onDone;
+        this.onFailed = onFailed;
+    }
+
+    @Override
+    protected Integer doInBackground() {
+        int count = 0;
+        List<Garment> chunk = new ArrayList<>(FIRST_CHUNK);
+        Iterator<Garment> garments = found.iterator(); // builds each garment as it's asked for
+        while (!isCancelled() && garments.hasNext()) {
+            chunk.add(garments.next());
+            count++;
+            if (chunk.size() == (count == chunk.size() ? FIRST_CHUNK : CHUNK)) {
+                publish(chunk);
+                chunk = new ArrayList<>(CHUNK);
+            }
+        }
+        if (!chunk.isEmpty()) publish(chunk);
+        return count;
+    }
+
+    @Override
+    protected void process(List<List<Garment>> chunks) {
+        if (isCancelled()) return; // published before the search was cancelled, but too late to be wanted
+        for (List<Garment> chunk : chunks) onChunk.accept(chunk);
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) return;
+        int total;
+        try {
+            total = get();
+        } catch (InterruptedException | ExecutionException e) {
+            onFailed.accept(e.getCause() == null ? e : e.getCause());
+            return;
+        }
+        onDone.accept(total);
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.Comparator;
+
+public enum SortKey {
+    // enum for the orders a page of search results can come in. Ties are always broken by product code, which is
+    // unique, so every garment has exactly one place in the order and a page always carries on where the last one ended
+    PRICE_ASCENDING,PRICE_DESCENDING,NAME,PRODUCT_CODE;
+
+    private static final Comparator<String> NAME_ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    /**
+     * Compares two garments by this key, then by product code
+     * @param price The first garment's price : double
+     * @param name The first garment's name, which only NAME needs : String
+     * @param productCode The first garment's product code : long
+     * @param otherPrice The second garment's price : double
+     * @param otherName The second garment's name, which only NAME needs : String
+     * @param otherProductCode The second garment's product code : long
+     * @return negative if the first garment comes first, positive if the second does, 0 if they're the same garment : int
+     */
+    public int compare(double price, String name, long productCode, double otherPrice, String otherName, long otherProductCode) {
+        int order = switch (this) {
+            case PRICE_ASCENDING -> Double.compare(price, otherPrice);
+            case PRICE_DESCENDING -> Double.compare(otherPrice, price);
+            case NAME -> NAME_ORDER.compare(name, otherName);
+            case PRODUCT_CODE -> 0;
+        };
+        return order != 0 ? order : Long.compare(productCode, otherProductCode);
+    }
+
+    /**
+     * Prints out each Enum value as a string in a prettier format
+     * @return Prettified String
+     */
+    public String toString() {
+        return switch (this) {
+            case PRICE_ASCENDING -> "Price: low to high";
+            case PRICE_DESCENDING -> "Price: high to low";
+            case NAME -> "Name";
+            case PRODUCT_CODE -> "Product code";
+        };
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * How many of each garment are left, size by size. Unlike the rest of an Inventory, stock isn't versioned: it changes
+ * with every order, so each garment just has one counter per Size, and reserving takes from it with a
+ * compare-and-set. No lock is ever taken, so orders for different garments never get in each other's way, and
+ * orders for the same garment only ever retry, never wait. A counter can't go below 0, so nothing is ever oversold.
+ * <p>
+ * Stock is kept by product code rather than ordinal, so it carries over when a garment is replaced (by a reload
+ * changing its price, say). Only garments whose stock has been set are counted, so a big catalog that doesn't count
+ * stock pays nothing for it; every size of any other garment is UNLIMITED, which is how the app behaved before stock
+ * was counted.
+ */
+public class StockLevels {
+    /*------------------FIELDS------*/
+    public static final int UNLIMITED = Integer.MAX_VALUE; // stock that isn't counted
+    public static final int NOT_OFFERED = -1; // a size the garment doesn't come in
+    private static final Size[] SIZES = Size.values();
+    private static final long ALL_SIZES = (1L << SIZES.length) - 1;
+    // product code -> count per Size ordinal, for the garments being counted
+    private final Map<Long, AtomicIntegerArray> levels = new ConcurrentHashMap<>();
+
+    /**
+     * Updates the sizes a counted garment comes in, when it's replaced. Sizes it still comes in keep their stock,
+     * sizes it no longer comes in are dropped, and new sizes start out UNLIMITED. Only called by Inventory, while it
+     * holds its write lock.
+     * @param productCode The garment's product code : long
+     * @param sizeMask bit mask of the garment's available sizes, or GarmentColumns.ABSENT : short
+     */
+    void track(long productCode, short sizeMask) {
+        AtomicIntegerArray counts = levels.get(productCode);
+        if (counts != null) offer(counts, sizeMask);
+    }
+
+    /**
+     * @param counts A garment's counters : AtomicIntegerArray
+     * @param sizeMask bit mask of the garment's available sizes, or GarmentColumns.ABSENT : short
+     */
+    private static void offer(AtomicIntegerArray counts, short sizeMask) {
+        for (int s = 0; s < SIZES.length; s++) {
+            if (!offers(sizeMask, s)) counts.set(s, NOT_OFFERED);
+            else counts.compareAndSet(s, NOT_OFFERED, UNLIMITED);
+        }
+    }
+
+    private static boolean offers(short sizeMask, int s) {
+        return sizeMask != GarmentColumns.ABSENT && (sizeMask & (1 << s)) != 0;
+    }
+
+    /**
+     * Stops counting a garment's stock, once it's gone from the inventory
+     * @param productCode The garment's product code : long
+     */
+    void forget(long productCode) {
+        levels.remove(productCode);
+    }
+
+    /**
+     * @param productCode A garment's product code : long
+     * @param size The size : Size
+     * @return How many are left, UNLIMITED if the garment isn't counted, or NOT_OFFERED if it's counted but doesn't
+     * come in that size : int
+     */
+    public int get(long productCode, Size size) {
+        AtomicIntegerArray counts = levels.get(productCode);
+        return counts == null ? UNLIMITED : counts.get(size.ordinal());
+    }
+
+    /**
+     * Sets how many of a garment there are in a size, as after a stock take or a delivery, and starts counting the
+     * garment's stock if it isn't already. Only called by Inventory, while it holds its write lock, so that the
+     * garment can't be removed or replaced in the meantime.
+     * @param productCode A garment's product code : long
+     * @param sizeMask bit mask of the garment's available sizes, or GarmentColumns.ABSENT : short
+     * @param size The size : Size
+     * @param count How many there are, or UNLIMITED to stop counting : int
+     * @throws IllegalArgumentException if the count is negative, or the garment doesn't come in that size
+     */
+    void set(long productCode, short sizeMask, Size size, int count) {
+        if (count < 0) throw new IllegalArgumentException("Stock can't be negative");
+        if (!offers(sizeMask, size.ordinal())) throw notOffered(productCode, size);
+        AtomicIntegerArray counts = levels.computeIfAbsent(productCode, k -> {
+            AtomicIntegerArray fresh = new AtomicIntegerArray(SIZES.length);
+            for (int s = 0; s < SIZES.length; s++) fresh.set(s, offers(sizeMask, s) ? UNLIMITED : NOT_OFFERED);
+            return fresh;
+        });
+        counts.set(size.ordinal(), count); // replaces whatever reservations did, which is what a stock take means
+    }
+
+    /**
+     * Takes stock for an order, if there's enough of it
+     * @param productCode A garment's product code : long
+     * @param size The size : Size
+     * @param quantity How many to take : int
+     * @return true if they were taken (always, if the garment isn't counted), false if there aren't that many
+     * left : boolean
+     * @throws IllegalArgumentException if the quantity isn't positive, or the garment is counted and doesn't come in
+     * that size
+     */
+    public boolean reserve(long productCode, Size size, int quantity) {
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity must be at least 1");
+        AtomicIntegerArray counts = levels.get(productCode);
+        if (counts == null) return true;
+        int s = size.ordinal();
+        while (true) {
+            int current = counts.get(s);
+            if (current == UNLIMITED) return true;
+            if (current == NOT_OFFERED) throw notOffered(productCode, size);
+            if (current < quantity) return false;
+            if (counts.compareAndSet(s, current, current - quantity)) return true;
+            // someone else took or returned some in the meantime, so look again
+        }
+    }
+
+    /**
+     * Puts stock back, for an order that was reserved but then couldn't be placed, or was cancelled
+     * @param productCode A garment's product code : long
+     * @param size The size : Size
+     * @param quantity How many to put back : int
+     * @throws IllegalArgumentException if the quantity isn't positive
+     */
+    public void release(long productCode, Size size, int quantity) {
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity must be at least 1");
+        AtomicIntegerArray counts = levels.get(productCode);
+        if (counts == null) return; // the garment is gone, so there's nowhere to put it back
+        int s = size.ordinal();
+        while (true) {
+            int current = counts.get(s);
+            if (current == UNLIMITED || current == NOT_OFFERED) return;
+            int returned = (int) Math.min((long) current + quantity, UNLIMITED - 1); // still counted
+            if (counts.compareAndSet(s, current, returned)) return;
+        }
+    }
+
+    /**
+     * @param productCode A garment's product code : long
+     * @param offered bit mask of the garment's available sizes, or GarmentColumns.ABSENT : short
+     * @param sizeMask bit n set for each Size ordinal n that will do : long
+     * @return true if the garment has at least one left in any of those sizes : boolean
+     */
+    public boolean inStock(long productCode, short offered, long sizeMask) {
+        AtomicIntegerArray counts = levels.get(productCode);
+        sizeMask &= ALL_SIZES;
+        if (counts == null) return offered != GarmentColumns.ABSENT && (offered & sizeMask) != 0;
+        while (sizeMask != 0) {
+            int s = Long.numberOfTrailingZeros(sizeMask);
+            sizeMask &= sizeMask - 1;
+            if (counts.get(s) > 0) return true; // NOT_OFFERED is negative
+        }
+        return false;
+    }
+
+    private static IllegalArgumentException notOffered(long productCode, Size size) {
+        return new IllegalArgumentException("There is no garment " + productCode + " in size " + size.name());
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that stock is never oversold: many threads order the same garment in the same size at once, as the server
+ * does for a sale everyone wants, until it sells out. Some of the orders fail after taking stock and put it back, as
+ * an order the journal couldn't write does. Once it has sold out, what was sold and what is left must add up to the
+ * stock there was to begin with. Run as, e.g.
+ * java StockStress 16 100000
+ */
+public class StockStress {
+    /*------------------FIELDS------*/
+    private static final long PRODUCT_CODE = 1;
+    private static final int FAILED_EVERY = 10; // every tenth order is put back, as if it couldn't be placed
+
+    /**
+     * main method
+     * @param args - the number of threads ordering (16) and the stock there is to begin with (100000)
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int initial = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Map<Filter, Object> filters = new HashMap<>();
+        filters.put(Filter.SIZE, EnumSet.of(Size.M));
+        Inventory inventory = new Inventory();
+        inventory.addGarment(new Garment("Hot item", PRODUCT_CODE, 10, "Everyone wants one", new GarmentSpecs(filters)));
+        inventory.setStock(PRODUCT_CODE, Size.M, initial);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] shoppers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            shoppers[t] = new Thread(() -> {
+                try {
+                    start.await(); // so they all start ordering at once
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int orders = 0;
+                while (true) {
+                    if (!inventory.reserve(PRODUCT_CODE, Size.M, 1)) {
+                        refused.incrementAndGet();
+                        if (inventory.getStock(PRODUCT_CODE, Size.M) == 0) return; // sold out for good
+                        continue; // one that failed was put back in the meantime
+                    }
+                    if (++orders % FAILED_EVERY == 0) inventory.release(PRODUCT_CODE, Size.M, 1);
+                    else sold.incrementAndGet();
+                }
+            });
+            shoppers[t].start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread shopper : shoppers) shopper.join();
+        long took = System.nanoTime() - began;
+        int left = inventory.getStock(PRODUCT_CODE, Size.M);
+        System.out.printf("%d threads: %d sold, %d left, %d refused, of %d, in %.2f ms%n",
+                threads, sold.get(), left, refused.get(), initial, took / 1e6);
+        if (sold.get() + left != initial) {
+            System.out.println("FAILED: sold and left don't add up to the stock there was");
+            System.exit(1);
+        }
+        System.out.println("OK: nothing oversold");
+    }
+}
@@ -8,6 +8,7 @@ public class UserDetailsView {
     private String email;
     private final Garment choice;
     private JTextArea message;
+    private JComboBox<Size> sizeChoice; // null if the garment doesn't come in sizes
     private final JLabel feedbackName = new JLabel("");
     private final JLabel feedbackEmail = new JLabel("");
 
@@ -29,6 +30,11 @@ public class UserDetailsView {
         JPanel confirm = this.choiceDetailsPanel(); // add each panel
         confirm.setAlignmentX(0); // centre them
         form.add(confirm);
+        if (choice.getGarmentSpecs().hasFilter(Filter.SIZE)) { // only garments that come in sizes ask for one
+            JPanel sizePanel = this.userSizePanel();
+            sizePanel.setAlignmentX(0);
+            form.add(sizePanel);
+        }
         JPanel namePanel = this.userNamePanel();
         namePanel.setAlignmentX(0);
         form.add(namePanel);
@@ -47,7 +53,7 @@ public class UserDetailsView {
      * @return JPanel object with uneditable text area containing description of Garment
      */
     public JPanel choiceDetailsPanel() {
-        JTextArea description = new JTextArea(choice.getGarmentInformation()); // populate with the garment's description text
+        JTextArea description = new JTextArea(GarmentDescriptions.describe(choice)); // populate with the garment's description text
         description.setEditable(false); // don't allow for editing this
         description.setLineWrap(true); // words flow into next line
         description.setWrapStyleWord(true); // words stay together
@@ -60,6 +66,25 @@ public class UserDetailsView {
         return choicePanel;
     }
 
+    /**
+     * Method that displays a choice of the sizes the garment comes in, so the order can take stock of that size
+     * @return JPanel object with instructional text and the sizes to choose from
+     */
+    public JPanel userSizePanel() {
+        JLabel instruction = new JLabel("Choose your size");
+        long offered = choice.getGarmentSpecs().getValueMask(Filter.SIZE);
+        sizeChoice = new JComboBox<>();
+        for (Size size : Size.values()) if ((offered & (1L << size.ordinal())) != 0) sizeChoice.addItem(size);
+        sizeChoice.setMaximumSize(sizeChoice.getPreferredSize()); // don't stretch across the form
+        JPanel sizePanel = new JPanel();
+        sizePanel.setLayout(new BoxLayout(sizePanel, BoxLayout.Y_AXIS)); // stack vertically
+        sizePanel.add(Box.createRigidArea(new Dimension(0, 10))); // pad
+        sizePanel.add(instruction);
+        sizeChoice.setAlignmentX(0);
+        sizePanel.add(sizeChoice);
+        return sizePanel;
+    }
+
     /**
      * Method that displays the name entry, enforcing a format through its DocumentListener that calls checkName.
      * Displays feedback text to let the user know what is expected of them.
@@ -216,6 +241,13 @@ public class UserDetailsView {
         return email;
     }
 
+    /**
+     * @return Size : the size chosen, or null if the garment doesn't come in sizes
+     */
+    public Size getSize() {
+        return sizeChoice == null ? null : (Size) sizeChoice.getSelectedItem();
+    }
+
     /**
      * @return String form obtained from the text of our JTextArea message field
      */